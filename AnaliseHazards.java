@@ -0,0 +1,460 @@
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Análise de conflitos com inserção de NOPs, alimentada bloco a bloco.
+// Todo o estado que cruza a fronteira entre blocos (placar, slot, endereço e
+// contadores) fica nos campos, então o programa não precisa estar inteiro na
+// memória. A listagem de cada bloco é gravada assim que o bloco termina; só
+// um desvio para um bloco seguinte segura a gravação até o alvo ser disposto.
+public class AnaliseHazards {
+    private static final byte[] SEPARADOR = "  ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TEXTO_NOP = "NOP".getBytes(StandardCharsets.US_ASCII);
+
+    private final boolean forwarding;
+    private final DescritorPipeline pipeline;
+
+    // Latência (em slots) até o resultado poder ser consumido, derivada do
+    // pipeline: no clássico de 5 estágios, sem forwarding o consumidor espera
+    // o write-back do produtor (3 NOPs a distância 1) e com forwarding
+    // (EX->EX e MEM->EX) só o load-use para 1 ciclo
+    private final int latenciaAlu;
+    private final int latenciaLoad;
+    private final int nopsControle; // NOPs após cada desvio/salto
+
+    private final ProgramaComNops layout = new ProgramaComNops(); // bloco atual com os NOPs inseridos
+    private final Relocacao relocacao = new Relocacao(); // desvios corrigidos para os novos endereços
+    private EscritorListagem listagem;
+    private Path arquivoSaida; // null quando a listagem vai para um canal qualquer
+    private boolean listagemFechada;
+    private int formato = EscritorListagem.TEXTO;
+    private final Scoreboard placar;
+    private final MotorCiclos motor;
+
+    // Escalonamento opcional: o bloco é reordenado antes da inserção de NOPs, e
+    // uma análise sem escalonamento roda junto para comparar o sobrecusto
+    private Escalonador escalonador;
+    private Programa escalonado;
+    private AnaliseHazards original;
+
+    // Resumo de cada bloco traduzido do Executor (índice = id do bloco) com o
+    // placar vazio na entrada: slots ocupados (0 = ainda não calculado),
+    // conflitos de dados e, para cada registrador escrito, o slot relativo em
+    // que fica pronto
+    private int[] slotsFrios = new int[0];
+    private int[] conflitosFrios = new int[0];
+    private int[] prontoFrio = new int[0];
+    private int[] cargasFrias = new int[0]; // registradores cuja última escrita no bloco é de um load
+    private int[] loadUsoFrios = new int[0];
+    private final Scoreboard placarFrio;
+
+    // Contadores de conflitos e NOPs
+    private long instrucoes;
+    private long conflitosDados;
+    private long conflitosLoadUso; // parte dos conflitos de dados em que o produtor é um load
+    private long conflitosControle;
+    private long nopsInseridos;
+    private long endereco; // endereço inicial (passa de 32 bits em traces longos)
+    private int slot; // posição no fluxo emitido (instruções + NOPs), relativa ao início do bloco
+    private boolean dinamico; // alimentada por um fluxo de execução
+
+    // arquivoSaida: null para só contar os conflitos, sem gerar a listagem.
+    // instrucoesPrevistas: limite superior do tamanho do programa (0 se desconhecido),
+    // usado só para escolher a largura dos endereços na listagem
+    public AnaliseHazards(boolean forwarding, Path arquivoSaida, long instrucoesPrevistas) throws IOException {
+        this(DescritorPipeline.CLASSICO, forwarding, arquivoSaida, instrucoesPrevistas);
+    }
+
+    public AnaliseHazards(DescritorPipeline pipeline, boolean forwarding, Path arquivoSaida, long instrucoesPrevistas)
+            throws IOException {
+        this.forwarding = forwarding;
+        this.pipeline = pipeline;
+        this.arquivoSaida = arquivoSaida;
+        if (arquivoSaida != null) {
+            this.listagem = new EscritorListagem(arquivoSaida);
+            this.listagem.definirMaiorEndereco(instrucoesPrevistas * pipeline.maxSlotsPorInstrucao() * 4);
+        } else {
+            this.listagem = null;
+        }
+        this.latenciaAlu = pipeline.latencia(forwarding, false);
+        this.latenciaLoad = pipeline.latencia(forwarding, true);
+        this.nopsControle = pipeline.nopsControle();
+        this.motor = new MotorCiclos(pipeline, forwarding);
+        // Com forwarding o dado de um store só é consumido no MEM
+        this.placar = new Scoreboard(pipeline.folgaDadoStore(forwarding));
+        this.placarFrio = new Scoreboard(pipeline.folgaDadoStore(forwarding));
+    }
+
+    // Deve ser chamado antes do primeiro bloco
+    public void ativarEscalonamento() throws IOException {
+        escalonador = new Escalonador(pipeline, forwarding);
+        escalonado = new Programa();
+        original = new AnaliseHazards(pipeline, forwarding, null, 0);
+    }
+
+    // Passada prévia do escalonamento com o programa em blocos: os blocos, na
+    // ordem, só para o escalonador conhecer os desvios que voltam a blocos
+    // anteriores. Sem escalonamento não faz nada.
+    public void registrarAlvos(Programa bloco) {
+        if (escalonador != null)
+            escalonador.registrarAlvos(bloco);
+    }
+
+    // Previsão de desvios no motor de ciclos (a listagem continua com os NOPs
+    // de controle, que valem para o pipeline sem previsão)
+    public void definirPreditor(PreditorDesvios preditor) {
+        motor.definirPreditor(preditor);
+    }
+
+    // Caches L1 no motor de ciclos (qualquer uma pode ser null)
+    public void definirCaches(Cache instrucoes, Cache dados) {
+        motor.definirCaches(instrucoes, dados);
+    }
+
+    // Conflitos estruturais no motor de ciclos: porta de memória única para
+    // busca e dados, e portas do banco de registradores. NOPs não resolvem
+    // esses conflitos (também ocupam a busca), então só o motor os conta.
+    public void definirEstrutura(boolean memoriaUnificada, int portasLeitura, int portasEscrita) {
+        motor.definirEstrutura(memoriaUnificada, portasLeitura, portasEscrita);
+    }
+
+    // Grava a listagem em um canal qualquer (por exemplo, em memória) em vez de
+    // um arquivo. Deve ser chamado antes do primeiro bloco.
+    public void gravarListagemEm(WritableByteChannel canal, long instrucoesPrevistas) {
+        listagem = new EscritorListagem(canal);
+        arquivoSaida = null;
+        listagem.definirMaiorEndereco(instrucoesPrevistas * pipeline.maxSlotsPorInstrucao() * 4);
+    }
+
+    // Formato da listagem (EscritorListagem.TEXTO, HEX ou BINARIO); hex e
+    // binário exigem código de máquina. Deve ser chamado antes do primeiro bloco.
+    public void definirFormato(int formato) {
+        this.formato = formato;
+    }
+
+    public void processar(Programa bloco) throws IOException {
+        processar(bloco, null);
+    }
+
+    // Trecho do fluxo de execução (Executor): mesma inserção de NOPs, com os
+    // desvios do motor seguindo os resultados reais. Não há relocação, porque
+    // o fluxo não é um programa que possa ser carregado de novo.
+    public void processar(Executor.Fluxo fluxo) throws IOException {
+        if (escalonador != null)
+            throw new IllegalStateException("O escalonamento só se aplica ao programa estático");
+        dinamico = true;
+        processar(fluxo.instrucoes(), fluxo);
+    }
+
+    private void processar(Programa bloco, Executor.Fluxo fluxo) throws IOException {
+        if (escalonador != null) {
+            original.processar(bloco);
+            escalonador.escalonar(bloco, escalonado);
+            bloco = escalonado;
+        }
+
+        long indiceBase = instrucoes;
+        for (int i = 0; i < bloco.tamanho(); i++) {
+            // Bloco básico já visto, sem depender do que ficou pendente antes dele:
+            // aplica o resumo calculado com o placar vazio
+            Executor.BlocoTraduzido traduzido = fluxo != null && listagem == null ? fluxo.blocoEm(i) : null;
+            if (traduzido != null && reaproveitar(traduzido, bloco, i)) {
+                i += traduzido.tamanho() - 1;
+                continue;
+            }
+
+            int opcode = bloco.opcode(i);
+
+            // Detecta conflito de dados com qualquer escrita ainda em andamento;
+            // os NOPs entram antes da instrução dependente
+            int espera = placar.espera(opcode, bloco.rs1(i), bloco.rs2(i), slot);
+            if (espera > 0) {
+                conflitosDados++;
+                if (placar.esperaPorCarga())
+                    conflitosLoadUso++;
+
+                for (int k = 0; k < espera; k++) {
+                    layout.adicionarNop();
+                    endereco += 4;
+                    slot++;
+                    nopsInseridos++;
+                }
+            }
+
+            layout.adicionar(i);
+            endereco += 4;
+            placar.escrever(bloco.rd(i), slot + (opcode == Decodificador.LOAD ? latenciaLoad : latenciaAlu),
+                    opcode == Decodificador.LOAD);
+            slot++;
+
+            // Detecta conflito de controle: os NOPs ocupam os slots após o desvio
+            if (Decodificador.ehControle(opcode)) {
+                conflitosControle++;
+
+                for (int k = 0; k < nopsControle; k++) {
+                    layout.adicionarNop();
+                    endereco += 4;
+                    slot++;
+                    nopsInseridos++;
+                }
+            }
+        }
+        instrucoes += bloco.tamanho();
+
+        // Corrige os desvios (os que saltam para blocos seguintes esperam na
+        // fila da relocação), grava o que já está pronto e libera o layout
+        if (listagem != null) {
+            relocacao.dispor(bloco, layout, indiceBase, !dinamico);
+            gravarListagem(relocacao.prontos());
+        }
+        layout.limpar(endereco);
+
+        // O placar passa a contar a partir do próximo bloco, então o slot fica
+        // limitado ao tamanho de um bloco mesmo em traces de bilhões de instruções
+        placar.deslocar(-slot);
+        slot = 0;
+
+        // Execução ciclo a ciclo do mesmo bloco no pipeline descrito
+        if (fluxo != null)
+            motor.alimentar(fluxo);
+        else
+            motor.alimentar(bloco);
+    }
+
+    // Grava os primeiros slots da fila da relocação. No formato texto, com
+    // endereço; nos outros, só as palavras, com o NOP codificado como ADDI x0, x0, 0.
+    private void gravarListagem(int slots) throws IOException {
+        for (int k = 0; k < slots; k++) {
+            String texto = relocacao.textoNaFila(k);
+            if (formato == EscritorListagem.TEXTO) {
+                listagem.escreverEndereco(relocacao.enderecoNaFila(k));
+                listagem.escrever(SEPARADOR);
+                if (relocacao.nopNaFila(k))
+                    listagem.escrever(TEXTO_NOP);
+                else if (texto != null)
+                    listagem.escrever(texto);
+                else
+                    listagem.escreverPalavra(relocacao.palavraNaFila(k));
+                listagem.novaLinha();
+            } else if (texto != null) {
+                throw new IllegalArgumentException("O formato " + EscritorListagem.FORMATOS[formato]
+                        + " exige código de máquina (" + texto + ")");
+            } else if (formato == EscritorListagem.BINARIO) {
+                listagem.escreverPalavraBinaria(relocacao.palavraNaFila(k));
+            } else {
+                listagem.escreverPalavra(relocacao.palavraNaFila(k));
+                listagem.novaLinha();
+            }
+        }
+        relocacao.descartar(slots);
+    }
+
+    // Aplica o resumo do bloco traduzido que começa na posição i, se nenhum
+    // registrador lido por ele ainda estiver pendente
+    private boolean reaproveitar(Executor.BlocoTraduzido traduzido, Programa bloco, int i) {
+        if (placar.pendente(traduzido.leituras(), slot))
+            return false;
+
+        int id = traduzido.id();
+        if (id >= slotsFrios.length) {
+            int tamanho = Math.max(id + 1, slotsFrios.length * 2);
+            slotsFrios = Arrays.copyOf(slotsFrios, tamanho);
+            conflitosFrios = Arrays.copyOf(conflitosFrios, tamanho);
+            loadUsoFrios = Arrays.copyOf(loadUsoFrios, tamanho);
+            cargasFrias = Arrays.copyOf(cargasFrias, tamanho);
+            prontoFrio = Arrays.copyOf(prontoFrio, tamanho * 32);
+        }
+        if (slotsFrios[id] == 0)
+            resumirFrio(id, bloco, i, traduzido.tamanho());
+
+        int escritas = traduzido.escritas();
+        while (escritas != 0) {
+            int r = Integer.numberOfTrailingZeros(escritas);
+            escritas &= escritas - 1;
+            placar.escrever(r, slot + prontoFrio[id * 32 + r], (cargasFrias[id] & (1 << r)) != 0);
+        }
+
+        int slots = slotsFrios[id];
+        slot += slots;
+        endereco += 4L * slots;
+        nopsInseridos += slots - traduzido.tamanho();
+        conflitosDados += conflitosFrios[id];
+        conflitosLoadUso += loadUsoFrios[id];
+        if (Decodificador.ehControle(bloco.opcode(i + traduzido.tamanho() - 1)))
+            conflitosControle++;
+        return true;
+    }
+
+    // Mesma inserção de NOPs do laço principal, com o placar vazio na entrada e
+    // os slots contados a partir do início do bloco
+    private void resumirFrio(int id, Programa bloco, int inicio, int tamanho) {
+        placarFrio.limpar();
+        int slotFrio = 0;
+        int conflitos = 0;
+        int loadUso = 0;
+        int cargas = 0;
+        for (int i = inicio; i < inicio + tamanho; i++) {
+            int opcode = bloco.opcode(i);
+            int espera = placarFrio.espera(opcode, bloco.rs1(i), bloco.rs2(i), slotFrio);
+            if (espera > 0) {
+                conflitos++;
+                if (placarFrio.esperaPorCarga())
+                    loadUso++;
+            }
+            slotFrio += espera;
+
+            int pronto = slotFrio + (opcode == Decodificador.LOAD ? latenciaLoad : latenciaAlu);
+            boolean carga = opcode == Decodificador.LOAD;
+            placarFrio.escrever(bloco.rd(i), pronto, carga);
+            prontoFrio[id * 32 + bloco.rd(i)] = pronto;
+            cargas = carga ? cargas | (1 << bloco.rd(i)) : cargas & ~(1 << bloco.rd(i));
+            slotFrio++;
+            if (Decodificador.ehControle(opcode))
+                slotFrio += nopsControle;
+        }
+        slotsFrios[id] = slotFrio;
+        conflitosFrios[id] = conflitos;
+        loadUsoFrios[id] = loadUso;
+        cargasFrias[id] = cargas;
+    }
+
+    // Esvazia o pipeline, fecha a listagem e imprime o resumo
+    public void concluir() throws IOException {
+        finalizar();
+        imprimirResumo();
+    }
+
+    public void finalizar() throws IOException {
+        motor.finalizar();
+        if (original != null)
+            original.finalizar();
+        if (listagem != null && !listagemFechada) {
+            // Desvios ainda pendentes apontam para o fim ou para fora do programa
+            boolean gravada = false;
+            try {
+                relocacao.encerrar(endereco);
+                gravarListagem(relocacao.prontos());
+                gravada = true;
+            } finally {
+                if (!gravada)
+                    descartarListagem();
+            }
+            listagemFechada = true;
+            listagem.close();
+            long falhas = relocacao.naoResolvidos() + relocacao.estouros();
+            if (!dinamico && falhas > 0)
+                System.err.println("Aviso: " + falhas + " desvio(s) da listagem " + (forwarding ? "com" : "sem")
+                        + " forwarding mantêm o deslocamento original (não resolvidos: "
+                        + relocacao.naoResolvidos() + ", estouros de alcance: " + relocacao.estouros()
+                        + "); a listagem não executa como o programa de entrada");
+        }
+    }
+
+    // Análise interrompida antes de finalizar (erro na leitura ou na gravação):
+    // fecha a listagem e apaga o arquivo incompleto. Depois de finalizar não faz nada.
+    public void descartarListagem() throws IOException {
+        if (listagem == null || listagemFechada)
+            return;
+        listagemFechada = true;
+        try {
+            listagem.close();
+        } finally {
+            if (arquivoSaida != null)
+                Files.deleteIfExists(arquivoSaida);
+        }
+    }
+
+    public void imprimirResumo() {
+        System.out.println("Resultado (" + (forwarding ? "Com" : "Sem") + " Forwarding)");
+        System.out.println((dinamico ? "Instruções executadas: " : "Instruções originais: ") + instrucoes);
+        System.out.println("Conflitos de Dados: " + conflitosDados + " (load-use: " + conflitosLoadUso
+                + ", ALU: " + (conflitosDados - conflitosLoadUso) + ")");
+        System.out.println("Conflitos de Controle: " + conflitosControle);
+        if (motor.temConflitosEstruturais())
+            System.out.println("Conflitos Estruturais: " + motor.conflitosEstruturais() + " (porta de memória: "
+                    + motor.conflitosPortaMemoria() + ", banco de registradores: "
+                    + motor.conflitosBancoRegistradores() + "), ciclos parados: " + motor.ciclosParadaEstrutural());
+        System.out.println("NOPs Inseridos: " + nopsInseridos);
+        if (original != null) {
+            System.out.println("Sobrecusto sem escalonamento: +" + original.nopsInseridos + " instruções");
+            System.out.println("Sobrecusto escalonado: +" + nopsInseridos + " instruções");
+            System.out.println("Ciclos sem escalonamento: " + original.motor.ciclos());
+        } else {
+            System.out.println("Sobrecusto: +" + nopsInseridos + " instruções");
+        }
+        System.out.println("Total final: " + (instrucoes + nopsInseridos));
+        System.out.println("Endereço final: 0x" + String.format("%04X", endereco - 4));
+        if (listagem != null && !dinamico)
+            relocacao.imprimirResumo();
+
+        long[] ocupacao = motor.ocupacao();
+        System.out.println("Ciclos totais: " + motor.ciclos());
+        System.out.println("CPI: " + String.format("%.3f", motor.cpi()));
+        System.out.println("Ciclos parados (dados): " + motor.ciclosParadaDados() + " (load-use: "
+                + motor.ciclosParadaLoadUso() + ")");
+        System.out.println("Bolhas de controle: " + motor.ciclosBolhaControle());
+        if (motor.preditor() != null) {
+            long desvios = motor.desviosPrevistos();
+            System.out.println("Preditor: " + motor.preditor().nome() + " - desvios: " + desvios
+                    + ", previsões erradas: " + motor.previsoesErradas()
+                    + String.format(" (%.1f%%)", desvios == 0 ? 0.0 : 100.0 * motor.previsoesErradas() / desvios)
+                    + ", penalidade: " + motor.ciclosPenalidadeErro() + " ciclos");
+        }
+        imprimirCache(motor.cacheInstrucoes(), motor.ciclosParadaCacheInstrucoes());
+        imprimirCache(motor.cacheDados(), motor.ciclosParadaCacheDados());
+        StringBuilder estagios = new StringBuilder();
+        for (int k = 0; k < ocupacao.length; k++)
+            estagios.append(k == 0 ? "" : "/").append(ocupacao[k]);
+        System.out.println("Ocupação " + pipeline.nomes() + ": " + estagios);
+        System.out.println("\n--------------------------------------------\n");
+    }
+
+    private void imprimirCache(Cache cache, long ciclosParados) {
+        if (cache == null)
+            return;
+        System.out.println(cache.nome() + " (" + cache.descricao() + "): acessos: " + cache.acessos()
+                + String.format(", acertos: %.2f%%, MPKI: %.2f", cache.taxaAcerto(), cache.mpki(instrucoes))
+                + ", ciclos parados: " + ciclosParados);
+    }
+
+    public long instrucoes() {
+        return instrucoes;
+    }
+
+    public long conflitosDados() {
+        return conflitosDados;
+    }
+
+    public long conflitosLoadUso() {
+        return conflitosLoadUso;
+    }
+
+    public long conflitosControle() {
+        return conflitosControle;
+    }
+
+    // Contados pelo motor de ciclos (0 sem conflitos estruturais configurados)
+    public long conflitosEstruturais() {
+        return motor.conflitosEstruturais();
+    }
+
+    public long nopsInseridos() {
+        return nopsInseridos;
+    }
+
+    // null quando o escalonamento não está ativo
+    public AnaliseHazards original() {
+        return original;
+    }
+
+    public DescritorPipeline pipeline() {
+        return pipeline;
+    }
+
+    public MotorCiclos motor() {
+        return motor;
+    }
+}
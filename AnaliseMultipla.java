@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Avalia várias configurações de pipeline em uma única passada pela entrada:
+// cada bloco é lido e decodificado uma vez e entregue a todas as análises, que
+// têm seus próprios contadores e listagens. Com mais de uma thread, as análises
+// de um mesmo bloco rodam em paralelo (o bloco só é lido enquanto isso).
+public class AnaliseMultipla implements LeitorTrace.ConsumidorBloco, AutoCloseable {
+    private final List<AnaliseHazards> analises;
+    private final ExecutorService executor; // null = tudo na thread atual
+    private final List<Callable<Void>> tarefas = new ArrayList<>();
+    private Programa blocoAtual;
+
+    public AnaliseMultipla(List<AnaliseHazards> analises, int threads) {
+        this.analises = analises;
+        int usadas = Math.min(threads, analises.size());
+        this.executor = usadas > 1 ? Executors.newFixedThreadPool(usadas) : null;
+
+        for (AnaliseHazards analise : analises) {
+            tarefas.add(() -> {
+                analise.processar(blocoAtual);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void processar(Programa bloco) throws IOException {
+        if (executor == null) {
+            for (AnaliseHazards analise : analises)
+                analise.processar(bloco);
+            return;
+        }
+
+        blocoAtual = bloco;
+        try {
+            for (Future<Void> f : executor.invokeAll(tarefas))
+                f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Análise interrompida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            blocoAtual = null;
+        }
+    }
+
+    // Finaliza todas as análises e imprime os resumos na ordem das configurações
+    public void concluir() throws IOException {
+        for (AnaliseHazards analise : analises)
+            analise.concluir();
+    }
+
+    // Finaliza sem imprimir os resumos
+    public void finalizar() throws IOException {
+        for (AnaliseHazards analise : analises)
+            analise.finalizar();
+    }
+
+    public List<AnaliseHazards> analises() {
+        return analises;
+    }
+
+    // Também descarta as listagens das análises não finalizadas, para uma falha
+    // na leitura não deixar canais abertos nem arquivos pela metade
+    @Override
+    public void close() throws IOException {
+        if (executor != null)
+            executor.shutdown();
+        for (AnaliseHazards analise : analises)
+            analise.descartarListagem();
+    }
+}
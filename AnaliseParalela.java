@@ -0,0 +1,332 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Inserção de NOPs em paralelo para programas grandes já na memória.
+//  1) O programa é dividido em partes analisadas de forma independente, cada uma
+//     começando com o placar vazio.
+//  2) Só o começo de cada parte pode depender da parte anterior: ele é refeito
+//     com o placar real de entrada até o estado coincidir com o da análise
+//     independente (em geral poucas instruções, no máximo a profundidade do pipeline).
+//  3) A soma acumulada dos slots de cada parte dá o endereço inicial de cada uma,
+//     e as listagens das partes são formatadas em paralelo e gravadas em ordem.
+public class AnaliseParalela {
+    private static final int TAMANHO_MINIMO_PARTE = 4096;
+    private static final byte[] SEPARADOR = "  ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TEXTO_NOP = "NOP".getBytes(StandardCharsets.US_ASCII);
+
+    private final boolean forwarding;
+    private final int latenciaAlu;
+    private final int latenciaLoad;
+    private final int folgaDadoStore; // com forwarding o dado de um store só é consumido no MEM
+    private final int nopsControle;
+    private final int maxSlotsPorInstrucao;
+    private final int threads;
+    private final int tamanhoParte; // 0 = escolhido pelo tamanho do programa
+
+    // Resultados
+    private long instrucoes;
+    private long conflitosDados;
+    private long conflitosLoadUso;
+    private long conflitosControle;
+    private long nopsInseridos;
+    private Relocacao relocacao; // só existe quando a listagem é gravada
+
+    public AnaliseParalela(boolean forwarding, int threads) {
+        this(forwarding, threads, 0);
+    }
+
+    public AnaliseParalela(boolean forwarding, int threads, int tamanhoParte) {
+        this(DescritorPipeline.CLASSICO, forwarding, threads, tamanhoParte);
+    }
+
+    public AnaliseParalela(DescritorPipeline pipeline, boolean forwarding, int threads, int tamanhoParte) {
+        this.forwarding = forwarding;
+        this.latenciaAlu = pipeline.latencia(forwarding, false);
+        this.latenciaLoad = pipeline.latencia(forwarding, true);
+        this.folgaDadoStore = pipeline.folgaDadoStore(forwarding);
+        this.nopsControle = pipeline.nopsControle();
+        this.maxSlotsPorInstrucao = pipeline.maxSlotsPorInstrucao();
+        // Os NOPs de dados de cada instrução ficam em um byte (um por instrução do programa)
+        if (Math.max(latenciaAlu, latenciaLoad) - 1 > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Pipeline profundo demais para a análise fork-join: até "
+                    + Byte.MAX_VALUE + " NOPs de dados por instrução (use a análise sequencial)");
+        this.threads = Math.max(1, threads);
+        this.tamanhoParte = tamanhoParte;
+    }
+
+    // Estado de cada parte ao fim da análise independente
+    private static class Parte {
+        final int inicio;
+        final int fim;
+        final Scoreboard placarFinal;
+        int slots; // instruções + NOPs da parte
+        long conflitosDados;
+        long conflitosLoadUso;
+        long conflitosControle;
+        long slotInicial; // posição global do primeiro slot (após a etapa 3)
+
+        Parte(int inicio, int fim, int folgaDadoStore) {
+            this.inicio = inicio;
+            this.fim = fim;
+            this.placarFinal = new Scoreboard(folgaDadoStore);
+        }
+    }
+
+    // arquivoSaida: null para só contar os conflitos
+    public void analisar(Programa programa, Path arquivoSaida) throws IOException {
+        analisar(programa, arquivoSaida, programa.tamanho());
+    }
+
+    // instrucoesPrevistas escolhe a largura dos endereços como em AnaliseHazards,
+    // para a listagem sair igual à da análise sequencial com o mesmo valor
+    public void analisar(Programa programa, Path arquivoSaida, long instrucoesPrevistas) throws IOException {
+        int n = programa.tamanho();
+        int tamanho = tamanhoParte > 0 ? tamanhoParte : Math.max(TAMANHO_MINIMO_PARTE, n / (threads * 4) + 1);
+        List<Parte> partes = new ArrayList<>();
+        for (int inicio = 0; inicio < n; inicio += tamanho)
+            partes.add(new Parte(inicio, Math.min(n, inicio + tamanho), folgaDadoStore));
+
+        byte[] nopsAntes = new byte[n]; // NOPs de dados inseridos antes de cada instrução
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            // Etapa 1: cada parte com o placar vazio
+            List<Callable<Void>> tarefas = new ArrayList<>();
+            for (Parte parte : partes) {
+                tarefas.add(() -> {
+                    analisarParte(programa, parte, nopsAntes);
+                    return null;
+                });
+            }
+            executarTodas(pool, tarefas);
+
+            // Etapa 2: corrige o começo de cada parte com o estado real de entrada
+            Scoreboard entrada = new Scoreboard(folgaDadoStore);
+            int slotEntrada = 0;
+            for (Parte parte : partes) {
+                int slotsIndependentes = parte.slots;
+                Scoreboard saida = reconciliar(programa, parte, nopsAntes, entrada, slotEntrada);
+                if (saida == null) {
+                    entrada = parte.placarFinal; // convergiu: o estado final independente é o real
+                    slotEntrada = slotsIndependentes;
+                } else {
+                    entrada = saida;
+                    slotEntrada = parte.slots;
+                }
+            }
+
+            // Etapa 3: soma acumulada dos slots para os endereços
+            long slot = 0;
+            for (Parte parte : partes) {
+                parte.slotInicial = slot;
+                slot += parte.slots;
+                conflitosDados += parte.conflitosDados;
+                conflitosLoadUso += parte.conflitosLoadUso;
+                conflitosControle += parte.conflitosControle;
+            }
+            instrucoes = n;
+            nopsInseridos = slot - n;
+
+            if (arquivoSaida != null) {
+                relocacao = new Relocacao();
+                relocacao.corrigir(programa, relocacao.tabela(programa, nopsAntes, nopsControle), 0);
+                gravarListagem(pool, programa, partes, nopsAntes, arquivoSaida,
+                        instrucoesPrevistas * maxSlotsPorInstrucao * 4);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void analisarParte(Programa programa, Parte parte, byte[] nopsAntes) {
+        Scoreboard placar = parte.placarFinal;
+        int slot = 0;
+        for (int i = parte.inicio; i < parte.fim; i++) {
+            int opcode = programa.opcode(i);
+            int espera = placar.espera(opcode, programa.rs1(i), programa.rs2(i), slot);
+            nopsAntes[i] = (byte) espera;
+            if (espera > 0) {
+                parte.conflitosDados++;
+                if (placar.esperaPorCarga())
+                    parte.conflitosLoadUso++;
+            }
+            slot += espera;
+
+            placar.escrever(programa.rd(i), slot + latencia(opcode), opcode == Decodificador.LOAD);
+            slot++;
+
+            if (Decodificador.ehControle(opcode)) {
+                parte.conflitosControle++;
+                slot += nopsControle;
+            }
+        }
+        parte.slots = slot;
+    }
+
+    // Refaz o começo da parte com o placar de entrada real, lado a lado com a
+    // análise independente, até os dois estados coincidirem. Retorna null se
+    // convergiu, ou o placar real ao fim da parte (relativo ao slot parte.slots).
+    private Scoreboard reconciliar(Programa programa, Parte parte, byte[] nopsAntes, Scoreboard entrada,
+            int slotEntrada) {
+        Scoreboard real = new Scoreboard(folgaDadoStore);
+        real.copiarDe(entrada, -slotEntrada);
+        Scoreboard independente = new Scoreboard(folgaDadoStore);
+        int slotReal = 0;
+        int slotIndependente = 0;
+
+        for (int i = parte.inicio; i < parte.fim; i++) {
+            if (real.equivalente(slotReal, independente, slotIndependente)) {
+                parte.slots += slotReal - slotIndependente;
+                return null;
+            }
+
+            int opcode = programa.opcode(i);
+            int esperaReal = real.espera(opcode, programa.rs1(i), programa.rs2(i), slotReal);
+            boolean cargaReal = esperaReal > 0 && real.esperaPorCarga();
+            int esperaIndependente = independente.espera(opcode, programa.rs1(i), programa.rs2(i), slotIndependente);
+            boolean cargaIndependente = esperaIndependente > 0 && independente.esperaPorCarga();
+            nopsAntes[i] = (byte) esperaReal;
+            parte.conflitosDados += (esperaReal > 0 ? 1 : 0) - (esperaIndependente > 0 ? 1 : 0);
+            parte.conflitosLoadUso += (cargaReal ? 1 : 0) - (cargaIndependente ? 1 : 0);
+            slotReal += esperaReal;
+            slotIndependente += esperaIndependente;
+
+            real.escrever(programa.rd(i), slotReal + latencia(opcode), opcode == Decodificador.LOAD);
+            independente.escrever(programa.rd(i), slotIndependente + latencia(opcode), opcode == Decodificador.LOAD);
+            slotReal++;
+            slotIndependente++;
+            if (Decodificador.ehControle(opcode)) {
+                slotReal += nopsControle;
+                slotIndependente += nopsControle;
+            }
+        }
+
+        // A parte inteira dependeu da entrada (parte menor que a profundidade do pipeline)
+        parte.slots += slotReal - slotIndependente;
+        return real;
+    }
+
+    private int latencia(int opcode) {
+        return opcode == Decodificador.LOAD ? latenciaLoad : latenciaAlu;
+    }
+
+    private void gravarListagem(ForkJoinPool pool, Programa programa, List<Parte> partes, byte[] nopsAntes,
+            Path arquivoSaida, long maiorEndereco) throws IOException {
+        List<Callable<byte[]>> tarefas = new ArrayList<>();
+        for (Parte parte : partes)
+            tarefas.add(() -> formatarParte(programa, relocacao, parte, nopsAntes, maiorEndereco, nopsControle));
+
+        // As partes são formatadas em paralelo e gravadas na ordem, liberando cada uma após gravar
+        List<Future<byte[]>> futuros = new ArrayList<>();
+        for (Callable<byte[]> tarefa : tarefas)
+            futuros.add(pool.submit(tarefa));
+
+        try (OutputStream saida = Files.newOutputStream(arquivoSaida, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int k = 0; k < futuros.size(); k++) {
+                saida.write(aguardar(futuros.get(k)));
+                futuros.set(k, null);
+            }
+        }
+    }
+
+    private static byte[] formatarParte(Programa programa, Relocacao relocacao, Parte parte, byte[] nopsAntes,
+            long maiorEndereco, int nopsControle) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (EscritorListagem listagem = new EscritorListagem(Channels.newChannel(bytes))) {
+            listagem.definirMaiorEndereco(maiorEndereco);
+            long endereco = parte.slotInicial * 4;
+            for (int i = parte.inicio; i < parte.fim; i++) {
+                for (int k = 0; k < nopsAntes[i]; k++)
+                    endereco = linhaNop(listagem, endereco);
+
+                listagem.escreverEndereco(endereco);
+                listagem.escrever(SEPARADOR);
+                String texto = programa.textoOriginal(i);
+                if (texto != null)
+                    listagem.escrever(texto);
+                else
+                    listagem.escreverPalavra(relocacao.palavra(i));
+                listagem.novaLinha();
+                endereco += 4;
+
+                if (Decodificador.ehControle(programa.opcode(i))) {
+                    for (int k = 0; k < nopsControle; k++)
+                        endereco = linhaNop(listagem, endereco);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long linhaNop(EscritorListagem listagem, long endereco) throws IOException {
+        listagem.escreverEndereco(endereco);
+        listagem.escrever(SEPARADOR);
+        listagem.escrever(TEXTO_NOP);
+        listagem.novaLinha();
+        return endereco + 4;
+    }
+
+    private static <T> void executarTodas(ForkJoinPool pool, List<Callable<T>> tarefas) throws IOException {
+        for (Future<T> f : pool.invokeAll(tarefas))
+            aguardar(f);
+    }
+
+    private static <T> T aguardar(Future<T> futuro) throws IOException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Análise interrompida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void imprimirResumo() {
+        System.out.println("Resultado (" + (forwarding ? "Com" : "Sem") + " Forwarding, " + threads + " threads)");
+        System.out.println("Instruções originais: " + instrucoes);
+        System.out.println("Conflitos de Dados: " + conflitosDados + " (load-use: " + conflitosLoadUso
+                + ", ALU: " + (conflitosDados - conflitosLoadUso) + ")");
+        System.out.println("Conflitos de Controle: " + conflitosControle);
+        System.out.println("NOPs Inseridos: " + nopsInseridos);
+        System.out.println("Sobrecusto: +" + nopsInseridos + " instruções");
+        System.out.println("Total final: " + (instrucoes + nopsInseridos));
+        if (relocacao != null)
+            relocacao.imprimirResumo();
+        System.out.println("\n--------------------------------------------\n");
+    }
+
+    public long instrucoes() {
+        return instrucoes;
+    }
+
+    public long conflitosDados() {
+        return conflitosDados;
+    }
+
+    public long conflitosLoadUso() {
+        return conflitosLoadUso;
+    }
+
+    public long conflitosControle() {
+        return conflitosControle;
+    }
+
+    public long nopsInseridos() {
+        return nopsInseridos;
+    }
+}
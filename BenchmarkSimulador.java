@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Medição dos caminhos quentes do simulador (leitura, detecção de conflitos nos
+// dois modos, sequencial e fork-join, e formatação da listagem) sobre traces
+// sintéticos. Os resultados saem em JSON, no mesmo formato geral do JMH
+// (benchmark, params, primaryMetric), para poderem ser comparados entre versões.
+//
+// Uso: java BenchmarkSimulador [--tamanhos 1000,1000000,100000000]
+//          [--aquecimento 3] [--iteracoes 5] [--saida bench_output.json]
+public class BenchmarkSimulador {
+    private static final String[] MISTURAS = {"dependencias", "desvios"};
+    private static final byte[] SEPARADOR = "  ".getBytes(StandardCharsets.US_ASCII);
+    // Divide 1M e 100M exatamente, para a análise processar n instruções cheias
+    private static final int TAMANHO_BLOCO = 50_000;
+    // A análise fork-join precisa do programa inteiro na memória
+    private static final long LIMITE_PARALELO = 10_000_000;
+
+    private interface Tarefa {
+        long executar() throws IOException; // retorna um valor para o JIT não descartar o trabalho
+    }
+
+    public static void main(String[] args) throws IOException {
+        long[] tamanhos = {1_000, 1_000_000};
+        int aquecimento = 3;
+        int iteracoes = 5;
+        Path saida = Paths.get("bench_output.json");
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException("Falta o valor de " + args[i]);
+            switch (args[i]) {
+                case "--tamanhos":
+                    String[] partes = args[i + 1].split(",");
+                    tamanhos = new long[partes.length];
+                    for (int k = 0; k < partes.length; k++)
+                        tamanhos[k] = Long.parseLong(partes[k].trim());
+                    break;
+                case "--aquecimento":
+                    aquecimento = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--iteracoes":
+                    iteracoes = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--saida":
+                    saida = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+            }
+        }
+
+        List<String> resultados = new ArrayList<>();
+        for (long tamanho : tamanhos) {
+            for (String mistura : MISTURAS) {
+                long n = tamanho;
+                // Um bloco gerado uma vez e reaplicado até completar n instruções
+                Programa bloco = TraceSintetico.bloco(mistura, (int) Math.min(n, TAMANHO_BLOCO));
+
+                resultados.add(medir("leitura", mistura, n, aquecimento, iteracoes,
+                        () -> LeitorTrace.ler(new TraceSintetico(mistura, n), b -> { })));
+                resultados.add(medir("conflitos_sem_forwarding", mistura, n, aquecimento, iteracoes,
+                        () -> analisar(bloco, n, false)));
+                resultados.add(medir("conflitos_com_forwarding", mistura, n, aquecimento, iteracoes,
+                        () -> analisar(bloco, n, true)));
+                if (n <= LIMITE_PARALELO) {
+                    Programa programa = repetir(bloco, (int) n);
+                    resultados.add(medir("conflitos_paralelo", mistura, n, aquecimento, iteracoes,
+                            () -> analisarParalelo(programa)));
+                }
+                resultados.add(medir("formatacao", mistura, n, aquecimento, iteracoes,
+                        () -> formatar(bloco, n)));
+            }
+        }
+
+        Files.write(saida, List.of("[\n" + String.join(",\n", resultados) + "\n]"));
+        System.out.println("Resultados gravados em " + saida);
+    }
+
+    private static long analisar(Programa bloco, long n, boolean forwarding) throws IOException {
+        AnaliseHazards analise = new AnaliseHazards(forwarding, null, n);
+        for (long feitas = 0; feitas < n; feitas += bloco.tamanho())
+            analise.processar(bloco);
+        analise.finalizar();
+        return analise.nopsInseridos() + analise.motor().ciclos();
+    }
+
+    // Sem forwarding, com uma thread por núcleo
+    private static long analisarParalelo(Programa programa) throws IOException {
+        AnaliseParalela analise = new AnaliseParalela(false, Runtime.getRuntime().availableProcessors());
+        analise.analisar(programa, null);
+        return analise.nopsInseridos();
+    }
+
+    // O bloco repetido até n instruções, em um só programa
+    private static Programa repetir(Programa bloco, int n) {
+        Programa programa = new Programa(n);
+        for (int feitas = 0; feitas < n; feitas += bloco.tamanho())
+            programa.adicionarDe(bloco, 0, Math.min(bloco.tamanho(), n - feitas));
+        return programa;
+    }
+
+    private static long formatar(Programa bloco, long n) throws IOException {
+        CanalDescarte descarte = new CanalDescarte();
+        try (EscritorListagem listagem = new EscritorListagem(descarte)) {
+            listagem.definirMaiorEndereco(n * 4);
+            int endereco = 0;
+            for (long feitas = 0; feitas < n; feitas++) {
+                listagem.escreverEndereco(endereco);
+                listagem.escrever(SEPARADOR);
+                listagem.escreverPalavra(bloco.palavra((int) (feitas % bloco.tamanho())));
+                listagem.novaLinha();
+                endereco += 4;
+            }
+        }
+        return descarte.bytes;
+    }
+
+    private static String medir(String nome, String mistura, long n, int aquecimento, int iteracoes, Tarefa tarefa)
+            throws IOException {
+        // Traces grandes já levam segundos por iteração; basta uma de aquecimento
+        if (n >= 10_000_000) {
+            aquecimento = Math.min(aquecimento, 1);
+            iteracoes = Math.min(iteracoes, 3);
+        }
+
+        // Traces pequenos são repetidos dentro de cada amostra para o tempo medido
+        // não ficar na casa dos microssegundos
+        int repeticoes = (int) Math.max(1, 1_000_000 / n);
+
+        long verificacao = 0;
+        for (int i = 0; i < aquecimento * repeticoes; i++)
+            verificacao += tarefa.executar();
+
+        double[] amostras = new double[iteracoes]; // instruções por segundo
+        for (int i = 0; i < iteracoes; i++) {
+            long inicio = System.nanoTime();
+            for (int r = 0; r < repeticoes; r++)
+                verificacao += tarefa.executar();
+            amostras[i] = (double) n * repeticoes / ((System.nanoTime() - inicio) / 1e9);
+        }
+
+        double media = 0;
+        for (double a : amostras)
+            media += a;
+        media /= iteracoes;
+        double variancia = 0;
+        for (double a : amostras)
+            variancia += (a - media) * (a - media);
+        double desvio = iteracoes > 1 ? Math.sqrt(variancia / (iteracoes - 1)) : 0;
+
+        System.out.printf(Locale.ROOT, "%-26s %-13s %,13d  %,16.0f instr/s  (verificação %d)%n",
+                nome, mistura, n, media, verificacao);
+
+        StringBuilder brutos = new StringBuilder();
+        for (int i = 0; i < iteracoes; i++)
+            brutos.append(i == 0 ? "" : ", ").append(String.format(Locale.ROOT, "%.1f", amostras[i]));
+
+        return String.format(Locale.ROOT, "  {\"benchmark\": \"%s\", \"mode\": \"thrpt\","
+                + " \"params\": {\"mistura\": \"%s\", \"instrucoes\": \"%d\"},"
+                + " \"warmupIterations\": %d, \"measurementIterations\": %d,"
+                + " \"primaryMetric\": {\"score\": %.1f, \"scoreStdev\": %.1f, \"scoreUnit\": \"instr/s\","
+                + " \"rawData\": [[%s]]}}",
+                nome, mistura, n, aquecimento, iteracoes, media, desvio, brutos);
+    }
+
+    // Gera palavras RV32I de forma determinística, direto em um canal de
+    // leitura (uma palavra hexadecimal por linha), sem manter o trace na memória
+    static class TraceSintetico implements ReadableByteChannel {
+        private static final byte[] DIGITOS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+        private final boolean desvios;
+        private final long total;
+        private long geradas;
+        private int semente = 0x2545F491;
+        private int ultimoRd = 5;
+
+        TraceSintetico(String mistura, long total) {
+            this.desvios = mistura.equals("desvios");
+            this.total = total;
+        }
+
+        static Programa bloco(String mistura, int tamanho) {
+            TraceSintetico gerador = new TraceSintetico(mistura, tamanho);
+            Programa bloco = new Programa(tamanho);
+            for (int i = 0; i < tamanho; i++)
+                bloco.adicionarPalavra(gerador.proxima());
+            return bloco;
+        }
+
+        private int aleatorio(int limite) {
+            semente ^= semente << 13;
+            semente ^= semente >>> 17;
+            semente ^= semente << 5;
+            return (semente >>> 1) % limite;
+        }
+
+        // Mistura "dependencias": cadeias de ALU, loads e stores que leem o
+        // resultado anterior. Mistura "desvios": ~45% de desvios e saltos.
+        int proxima() {
+            geradas++;
+            int rd = 5 + aleatorio(20);
+            int sorteio = aleatorio(100);
+
+            if (desvios) {
+                if (sorteio < 35)
+                    return Decodificador.codificarB((aleatorio(64) - 32) << 2, rd, ultimoRd, aleatorio(2));
+                if (sorteio < 45)
+                    return Decodificador.codificarJ((aleatorio(256) - 128) << 2, 0);
+                ultimoRd = rd;
+                return Decodificador.codificarR(0, 5 + aleatorio(20), 5 + aleatorio(20), 0, rd, 0x33);
+            }
+
+            int fonte = ultimoRd;
+            ultimoRd = rd;
+            if (sorteio < 40)
+                return Decodificador.codificarR(0, 5 + aleatorio(20), fonte, 0, rd, 0x33);
+            if (sorteio < 65)
+                return Decodificador.codificarI(1, fonte, 0, rd, 0x13);
+            if (sorteio < 85)
+                return Decodificador.codificarI(0, fonte, 2, rd, 0x03);
+            ultimoRd = fonte;
+            return Decodificador.codificarS(4, fonte, 2, 2);
+        }
+
+        @Override
+        public int read(ByteBuffer destino) {
+            if (geradas >= total)
+                return -1;
+            int escritos = 0;
+            while (destino.remaining() >= 9 && geradas < total) {
+                int palavra = proxima();
+                for (int k = 28; k >= 0; k -= 4)
+                    destino.put(DIGITOS[(palavra >>> k) & 0xF]);
+                destino.put((byte) '\n');
+                escritos += 9;
+            }
+            return escritos;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // Canal de saída que só conta os bytes, para medir a formatação sem disco
+    private static class CanalDescarte implements WritableByteChannel {
+        long bytes;
+
+        @Override
+        public int write(ByteBuffer origem) {
+            int n = origem.remaining();
+            origem.position(origem.limit());
+            bytes += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.Arrays;
+
+// Cache L1 associativa por conjunto com substituição LRU ou pseudo-LRU em
+// árvore. As etiquetas e o estado de substituição ficam em arrays primitivos
+// (uma posição por via), então cada acesso custa só algumas leituras de array.
+public class Cache {
+    private static final int VAZIA = -1; // nenhuma etiqueta real é negativa (a linha tem ao menos 4 bytes)
+
+    private final String nome;
+    private final int tamanhoBytes;
+    private final int associatividade;
+    private final int tamanhoLinha;
+    private final boolean plru;
+    private final int latenciaFalta; // ciclos extras em cada falta
+
+    private final int bitsLinha;
+    private final int bitsConjuntos;
+    private final int mascaraConjuntos;
+    private final int[] etiquetas; // conjunto * associatividade + via
+    private final long[] ultimoUso; // LRU: instante do último acesso a cada via
+    private final int[] arvores; // PLRU: associatividade - 1 bits por conjunto
+    private long instante;
+
+    private long acessos;
+    private long faltas;
+
+    public Cache(String nome, int tamanhoBytes, int associatividade, int tamanhoLinha, boolean plru,
+            int latenciaFalta) {
+        if (Integer.bitCount(tamanhoLinha) != 1 || tamanhoLinha < 4)
+            throw new IllegalArgumentException(nome + ": tamanho de linha deve ser potência de 2 (>= 4)");
+        if (Integer.bitCount(associatividade) != 1 || associatividade > 32)
+            throw new IllegalArgumentException(nome + ": associatividade deve ser potência de 2 (<= 32)");
+        int conjuntos = tamanhoBytes / (tamanhoLinha * associatividade);
+        if (conjuntos < 1 || Integer.bitCount(conjuntos) != 1
+                || conjuntos * tamanhoLinha * associatividade != tamanhoBytes)
+            throw new IllegalArgumentException(nome + ": tamanho deve ser linha x associatividade x potência de 2");
+        if (latenciaFalta < 0)
+            throw new IllegalArgumentException(nome + ": latência de falta deve ser >= 0 (" + latenciaFalta + ")");
+
+        this.nome = nome;
+        this.tamanhoBytes = tamanhoBytes;
+        this.associatividade = associatividade;
+        this.tamanhoLinha = tamanhoLinha;
+        this.plru = plru;
+        this.latenciaFalta = latenciaFalta;
+        this.bitsLinha = Integer.numberOfTrailingZeros(tamanhoLinha);
+        this.bitsConjuntos = Integer.numberOfTrailingZeros(conjuntos);
+        this.mascaraConjuntos = conjuntos - 1;
+        this.etiquetas = new int[conjuntos * associatividade];
+        Arrays.fill(etiquetas, VAZIA);
+        this.ultimoUso = plru ? null : new long[conjuntos * associatividade];
+        this.arvores = plru ? new int[conjuntos] : null;
+    }
+
+    // Especificação "tamanho:associatividade:linha:politica:latencia", com o
+    // tamanho em bytes ou com sufixo K (por exemplo "16K:4:32:lru:20")
+    public static Cache criar(String nome, String especificacao) {
+        String[] campos = especificacao.split(":");
+        if (campos.length != 5)
+            throw new IllegalArgumentException(nome + ": use tamanho:associatividade:linha:lru|plru:latencia ("
+                    + especificacao + ")");
+        String tamanho = campos[0].trim().toUpperCase();
+        int bytes = tamanho.endsWith("K") ? Integer.parseInt(tamanho.substring(0, tamanho.length() - 1)) * 1024
+                : Integer.parseInt(tamanho);
+        String politica = campos[3].trim().toLowerCase();
+        if (!politica.equals("lru") && !politica.equals("plru"))
+            throw new IllegalArgumentException(nome + ": política deve ser lru ou plru (" + politica + ")");
+        return new Cache(nome, bytes, Integer.parseInt(campos[1].trim()), Integer.parseInt(campos[2].trim()),
+                politica.equals("plru"), Integer.parseInt(campos[4].trim()));
+    }
+
+    // Acessa o endereço e retorna os ciclos extras (0 no acerto, a latência na falta)
+    public int acessar(int endereco) {
+        acessos++;
+        int conjunto = (endereco >>> bitsLinha) & mascaraConjuntos;
+        int etiqueta = endereco >>> (bitsLinha + bitsConjuntos);
+        int base = conjunto * associatividade;
+
+        for (int via = 0; via < associatividade; via++) {
+            if (etiquetas[base + via] == etiqueta) {
+                usar(conjunto, via);
+                return 0;
+            }
+        }
+
+        faltas++;
+        int via = vitima(conjunto);
+        etiquetas[base + via] = etiqueta;
+        usar(conjunto, via);
+        return latenciaFalta;
+    }
+
+    private void usar(int conjunto, int via) {
+        if (!plru) {
+            ultimoUso[conjunto * associatividade + via] = ++instante;
+            return;
+        }
+        // Cada nó da árvore aponta para a metade menos usada: ao usar a via, os
+        // nós do caminho passam a apontar para o outro lado
+        int arvore = arvores[conjunto];
+        int no = 0;
+        for (int metade = associatividade >> 1; metade > 0; metade >>= 1) {
+            boolean direita = (via & metade) != 0;
+            arvore = direita ? arvore & ~(1 << no) : arvore | (1 << no);
+            no = 2 * no + (direita ? 2 : 1);
+        }
+        arvores[conjunto] = arvore;
+    }
+
+    private int vitima(int conjunto) {
+        int base = conjunto * associatividade;
+        for (int via = 0; via < associatividade; via++) {
+            if (etiquetas[base + via] == VAZIA)
+                return via;
+        }
+
+        if (!plru) {
+            int via = 0;
+            for (int v = 1; v < associatividade; v++) {
+                if (ultimoUso[base + v] < ultimoUso[base + via])
+                    via = v;
+            }
+            return via;
+        }
+
+        int arvore = arvores[conjunto];
+        int no = 0;
+        int via = 0;
+        for (int metade = associatividade >> 1; metade > 0; metade >>= 1) {
+            boolean direita = (arvore & (1 << no)) != 0;
+            if (direita)
+                via |= metade;
+            no = 2 * no + (direita ? 2 : 1);
+        }
+        return via;
+    }
+
+    public String nome() {
+        return nome;
+    }
+
+    public long acessos() {
+        return acessos;
+    }
+
+    public long faltas() {
+        return faltas;
+    }
+
+    public double taxaAcerto() {
+        return acessos == 0 ? 0 : 100.0 * (acessos - faltas) / acessos;
+    }
+
+    // Faltas por mil instruções
+    public double mpki(long instrucoes) {
+        return instrucoes == 0 ? 0 : 1000.0 * faltas / instrucoes;
+    }
+
+    public String descricao() {
+        return (tamanhoBytes % 1024 == 0 ? tamanhoBytes / 1024 + "K" : tamanhoBytes + "B") + ", "
+                + (associatividade == 1 ? "mapeamento direto" : associatividade + " vias")
+                + ", linha " + tamanhoLinha + ", " + (plru ? "PLRU" : "LRU") + ", falta " + latenciaFalta + " ciclos";
+    }
+}
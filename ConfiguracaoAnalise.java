@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Um ponto do espaço de projeto: pipeline, forwarding, escalonamento, preditor,
+// caches e recursos compartilhados. Guarda só as especificações (é imutável e
+// pode ser compartilhado entre threads); cada análise criada recebe seus
+// próprios preditor e caches, que têm estado.
+public class ConfiguracaoAnalise {
+    public static final String SEM_PREDITOR = "nenhum";
+    public static final String SEM_CACHE = "nenhuma";
+
+    private final DescritorPipeline pipeline;
+    private final String especificacaoPipeline;
+    private final boolean forwarding;
+    private final boolean escalonamento;
+    private final String preditor; // SEM_PREDITOR ou um de PreditorDesvios.NOMES
+    private final String cacheInstrucoes; // SEM_CACHE ou especificação de Cache.criar
+    private final String cacheDados;
+    private final boolean memoriaUnificada;
+    private final int portasLeitura;
+    private final int portasEscrita;
+
+    public ConfiguracaoAnalise(String pipeline, boolean forwarding, boolean escalonamento, String preditor,
+            String cacheInstrucoes, String cacheDados, boolean memoriaUnificada, int portasLeitura,
+            int portasEscrita) {
+        this.pipeline = DescritorPipeline.criar(pipeline);
+        this.especificacaoPipeline = pipeline;
+        this.forwarding = forwarding;
+        this.escalonamento = escalonamento;
+        this.preditor = preditor;
+        this.cacheInstrucoes = cacheInstrucoes;
+        this.cacheDados = cacheDados;
+        this.memoriaUnificada = memoriaUnificada;
+        this.portasLeitura = portasLeitura;
+        this.portasEscrita = portasEscrita;
+
+        // Valida as especificações já aqui, e não no meio de uma varredura
+        if (!preditor.equals(SEM_PREDITOR))
+            PreditorDesvios.criar(preditor);
+        criarCache("L1-I", cacheInstrucoes);
+        criarCache("L1-D", cacheDados);
+        new MotorCiclos(forwarding).definirEstrutura(memoriaUnificada, portasLeitura, portasEscrita);
+    }
+
+    // Pipeline clássico sem preditor, caches ou conflitos estruturais
+    public static ConfiguracaoAnalise padrao(boolean forwarding) {
+        return new ConfiguracaoAnalise("5", forwarding, false, SEM_PREDITOR, SEM_CACHE, SEM_CACHE, false, 2, 1);
+    }
+
+    // Mesma configuração com outro forwarding/escalonamento
+    public ConfiguracaoAnalise variante(boolean forwarding, boolean escalonamento) {
+        return new ConfiguracaoAnalise(especificacaoPipeline, forwarding, escalonamento, preditor, cacheInstrucoes,
+                cacheDados, memoriaUnificada, portasLeitura, portasEscrita);
+    }
+
+    // Nova análise com esta configuração (arquivoSaida null = só contadores)
+    public AnaliseHazards criarAnalise(Path arquivoSaida, long instrucoesPrevistas) throws IOException {
+        AnaliseHazards analise = new AnaliseHazards(pipeline, forwarding, arquivoSaida, instrucoesPrevistas);
+        if (escalonamento)
+            analise.ativarEscalonamento();
+        if (!preditor.equals(SEM_PREDITOR))
+            analise.definirPreditor(PreditorDesvios.criar(preditor));
+        analise.definirCaches(criarCache("L1-I", cacheInstrucoes), criarCache("L1-D", cacheDados));
+        analise.definirEstrutura(memoriaUnificada, portasLeitura, portasEscrita);
+        return analise;
+    }
+
+    private static Cache criarCache(String nome, String especificacao) {
+        return especificacao.equals(SEM_CACHE) ? null : Cache.criar(nome, especificacao);
+    }
+
+    public DescritorPipeline pipeline() {
+        return pipeline;
+    }
+
+    public String especificacaoPipeline() {
+        return especificacaoPipeline;
+    }
+
+    public boolean forwarding() {
+        return forwarding;
+    }
+
+    public boolean escalonamento() {
+        return escalonamento;
+    }
+
+    public String preditor() {
+        return preditor;
+    }
+
+    public String cacheInstrucoes() {
+        return cacheInstrucoes;
+    }
+
+    public String cacheDados() {
+        return cacheDados;
+    }
+
+    public boolean memoriaUnificada() {
+        return memoriaUnificada;
+    }
+
+    public int portasLeitura() {
+        return portasLeitura;
+    }
+
+    public int portasEscrita() {
+        return portasEscrita;
+    }
+}
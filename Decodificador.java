@@ -0,0 +1,379 @@
+public class Decodificador {
+    // Classes de instrução (campo "classe" do registro decodificado)
+    public static final int INVALIDA = 0;
+    public static final int ALU_REG = 1; // add, sub, and, or, ... (R)
+    public static final int ALU_IMM = 2; // addi, andi, slli, ... (I)
+    public static final int LOAD = 3; // lb, lh, lw, lbu, lhu (I)
+    public static final int STORE = 4; // sb, sh, sw (S)
+    public static final int DESVIO = 5; // beq, bne, blt, bge, bltu, bgeu (B)
+    public static final int JAL = 6; // (J)
+    public static final int JALR = 7; // (I)
+    public static final int LUI = 8; // (U)
+    public static final int AUIPC = 9; // (U)
+    public static final int SISTEMA = 10; // ecall, ebreak, csr*
+    public static final int FENCE = 11;
+
+    // Formatos de imediato
+    private static final int FMT_NENHUM = 0;
+    private static final int FMT_I = 1;
+    private static final int FMT_S = 2;
+    private static final int FMT_B = 3;
+    private static final int FMT_U = 4;
+    private static final int FMT_J = 5;
+
+    // Campos de registrador usados por cada classe
+    private static final int USA_RD = 1;
+    private static final int USA_RS1 = 2;
+    private static final int USA_RS2 = 4;
+
+    // Tabelas indexadas pelo opcode de 7 bits
+    private static final byte[] CLASSE = new byte[128];
+    private static final byte[] FORMATO = new byte[128];
+    private static final byte[] CAMPOS = new byte[128];
+
+    // Nomes da ABI por número de registrador (fp é sinônimo de s0)
+    private static final String[] NOMES_ABI = {"ZERO", "RA", "SP", "GP", "TP", "T0", "T1", "T2", "S0", "S1",
+            "A0", "A1", "A2", "A3", "A4", "A5", "A6", "A7", "S2", "S3", "S4", "S5", "S6", "S7", "S8", "S9", "S10",
+            "S11", "T3", "T4", "T5", "T6"};
+
+    static {
+        registrar(0x33, ALU_REG, FMT_NENHUM, USA_RD | USA_RS1 | USA_RS2);
+        registrar(0x13, ALU_IMM, FMT_I, USA_RD | USA_RS1);
+        registrar(0x03, LOAD, FMT_I, USA_RD | USA_RS1);
+        registrar(0x23, STORE, FMT_S, USA_RS1 | USA_RS2);
+        registrar(0x63, DESVIO, FMT_B, USA_RS1 | USA_RS2);
+        registrar(0x6F, JAL, FMT_J, USA_RD);
+        registrar(0x67, JALR, FMT_I, USA_RD | USA_RS1);
+        registrar(0x37, LUI, FMT_U, USA_RD);
+        registrar(0x17, AUIPC, FMT_U, USA_RD);
+        registrar(0x73, SISTEMA, FMT_I, 0);
+        registrar(0x0F, FENCE, FMT_NENHUM, 0);
+    }
+
+    private static void registrar(int opcode, int classe, int formato, int campos) {
+        CLASSE[opcode] = (byte) classe;
+        FORMATO[opcode] = (byte) formato;
+        CAMPOS[opcode] = (byte) campos;
+    }
+
+    // Decodifica uma palavra de 32 bits em um registro compacto (long):
+    // bits 0-3 classe, 4-8 rd, 9-13 rs1, 14-18 rs2, 19-21 funct3,
+    // 22 bit 30 da instrução (sub/sra), 32-63 imediato com sinal.
+    // Registradores não usados pela classe ficam em 0 (x0 nunca gera conflito).
+    public static long decodificar(int palavra) {
+        int opcode = palavra & 0x7F;
+        int classe = CLASSE[opcode];
+        if ((palavra & 3) != 3)
+            classe = INVALIDA; // instruções comprimidas não são suportadas
+
+        int campos = CAMPOS[opcode];
+        int rd = (campos & USA_RD) != 0 ? (palavra >>> 7) & 0x1F : 0;
+        int rs1 = (campos & USA_RS1) != 0 ? (palavra >>> 15) & 0x1F : 0;
+        int rs2 = (campos & USA_RS2) != 0 ? (palavra >>> 20) & 0x1F : 0;
+        int funct3 = (palavra >>> 12) & 0x7;
+        int alt = (palavra >>> 30) & 1;
+
+        return empacotar(classe, rd, rs1, rs2, funct3, alt, imediato(palavra, FORMATO[opcode]));
+    }
+
+    public static long empacotar(int classe, int rd, int rs1, int rs2, int funct3, int alt, int imediato) {
+        return (classe & 0xF)
+                | (rd & 0x1F) << 4
+                | (rs1 & 0x1F) << 9
+                | (rs2 & 0x1F) << 14
+                | (funct3 & 0x7) << 19
+                | (alt & 1) << 22
+                | (long) imediato << 32;
+    }
+
+    private static int imediato(int p, int formato) {
+        switch (formato) {
+            case FMT_I:
+                return p >> 20;
+            case FMT_S:
+                return ((p >> 25) << 5) | ((p >>> 7) & 0x1F);
+            case FMT_B:
+                return ((p >> 31) << 12)
+                        | ((p >>> 7) & 1) << 11
+                        | ((p >>> 25) & 0x3F) << 5
+                        | ((p >>> 8) & 0xF) << 1;
+            case FMT_U:
+                return p & 0xFFFFF000;
+            case FMT_J:
+                return ((p >> 31) << 20)
+                        | ((p >>> 12) & 0xFF) << 12
+                        | ((p >>> 20) & 1) << 11
+                        | ((p >>> 21) & 0x3FF) << 1;
+            default:
+                return 0;
+        }
+    }
+
+    // Acesso aos campos do registro decodificado
+    public static int classe(long d) {
+        return (int) d & 0xF;
+    }
+
+    public static int rd(long d) {
+        return (int) (d >>> 4) & 0x1F;
+    }
+
+    public static int rs1(long d) {
+        return (int) (d >>> 9) & 0x1F;
+    }
+
+    public static int rs2(long d) {
+        return (int) (d >>> 14) & 0x1F;
+    }
+
+    public static int funct3(long d) {
+        return (int) (d >>> 19) & 0x7;
+    }
+
+    public static int alt(long d) {
+        return (int) (d >>> 22) & 1;
+    }
+
+    public static int imediato(long d) {
+        return (int) (d >> 32);
+    }
+
+    // Endereço de destino de desvios e JAL (relativos ao PC); -1 para as demais
+    public static int alvo(long d, int pc) {
+        int classe = classe(d);
+        return classe == DESVIO || classe == JAL ? pc + imediato(d) : -1;
+    }
+
+    public static boolean ehControle(int classe) {
+        return classe == DESVIO || classe == JAL || classe == JALR;
+    }
+
+    // Codificação inversa dos formatos RV32I (usada para gerar e corrigir instruções)
+    public static int codificarR(int funct7, int rs2, int rs1, int funct3, int rd, int opcode) {
+        return funct7 << 25 | rs2 << 20 | rs1 << 15 | funct3 << 12 | rd << 7 | opcode;
+    }
+
+    public static int codificarI(int imediato, int rs1, int funct3, int rd, int opcode) {
+        return imediato << 20 | rs1 << 15 | funct3 << 12 | rd << 7 | opcode;
+    }
+
+    public static int codificarS(int imediato, int rs2, int rs1, int funct3) {
+        return (imediato >> 5) << 25 | rs2 << 20 | rs1 << 15 | funct3 << 12 | (imediato & 0x1F) << 7 | 0x23;
+    }
+
+    public static int codificarB(int imediato, int rs2, int rs1, int funct3) {
+        return ((imediato >> 12) & 1) << 31
+                | ((imediato >> 5) & 0x3F) << 25
+                | rs2 << 20 | rs1 << 15 | funct3 << 12
+                | ((imediato >> 1) & 0xF) << 8
+                | ((imediato >> 11) & 1) << 7
+                | 0x63;
+    }
+
+    public static int codificarJ(int imediato, int rd) {
+        return ((imediato >> 20) & 1) << 31
+                | ((imediato >> 1) & 0x3FF) << 21
+                | ((imediato >> 11) & 1) << 20
+                | ((imediato >> 12) & 0xFF) << 12
+                | rd << 7
+                | 0x6F;
+    }
+
+    // Decodifica uma instrução em texto (ex.: "ADD R1, R2, R3" ou "LW R1, 8(R2)")
+    // para o mesmo registro compacto. A classe vem do mnemônico e define o papel
+    // de cada operando: destino e fontes na ALU, destino e base nos loads, dado
+    // e base nos stores, fontes nos desvios. Um operando deslocamento(base) vale
+    // pelo registrador base, e o deslocamento vira o imediato; operandos que não
+    // são registradores (rótulos, números) valem 0.
+    public static long decodificarTexto(CharSequence linha) {
+        int n = linha.length();
+        int i = pularSeparadores(linha, 0);
+        int inicioMnemonico = i;
+        while (i < n && !ehSeparador(linha.charAt(i)))
+            i++;
+        int classe = classeMnemonico(linha, inicioMnemonico, i);
+
+        int op0 = 0, op1 = 0, op2 = 0;
+        int imediato = 0;
+        for (int op = 0; op < 3; op++) {
+            i = pularSeparadores(linha, i);
+            int inicio = i;
+            while (i < n && !ehSeparador(linha.charAt(i)))
+                i++;
+            if (inicio == i)
+                break;
+
+            int reg;
+            int parentese = indice(linha, inicio, i, '(');
+            if (parentese >= 0) {
+                int fecha = indice(linha, parentese, i, ')');
+                reg = registrador(linha, parentese + 1, fecha >= 0 ? fecha : i);
+                imediato = numero(linha, inicio, parentese);
+            } else {
+                reg = registrador(linha, inicio, i);
+            }
+            if (op == 0)
+                op0 = reg;
+            else if (op == 1)
+                op1 = reg;
+            else
+                op2 = reg;
+        }
+
+        switch (classe) {
+            case DESVIO: // só lê registradores: os operandos são fontes
+                return empacotar(classe, 0, op0, op1, 0, 0, 0);
+            case JAL:
+                return empacotar(classe, op0, 0, 0, 0, 0, 0);
+            case JALR: // JR R1 só lê; JALR rd, rs1 ou JALR rd, desl(rs1)
+                return op1 == 0 ? empacotar(classe, 0, op0, 0, 0, 0, imediato)
+                        : empacotar(classe, op0, op1, 0, 0, 0, imediato);
+            case STORE: // SW dado, desl(base): o dado é rs2 e não há destino
+                return empacotar(classe, 0, op1, op0, 0, 0, imediato);
+            case LOAD:
+            case ALU_IMM:
+                return empacotar(classe, op0, op1, 0, 0, 0, imediato);
+            case LUI:
+            case AUIPC:
+                return empacotar(classe, op0, 0, 0, 0, 0, 0);
+            default:
+                return empacotar(classe, op0, op1, op2, 0, 0, 0);
+        }
+    }
+
+    private static int classeMnemonico(CharSequence s, int inicio, int fim) {
+        if (fim == inicio)
+            return INVALIDA;
+        char c = Character.toUpperCase(s.charAt(inicio));
+        char ultimo = Character.toUpperCase(s.charAt(fim - 1));
+        if (c == 'B')
+            return DESVIO; // BEQ, BNE, BLT, BGE, BLTU, BGEU (e BEQZ, BNEZ)
+        if (c == 'J')
+            return igual(s, inicio, fim, "JR") || igual(s, inicio, fim, "JALR") ? JALR : JAL;
+        if (igual(s, inicio, fim, "LW") || igual(s, inicio, fim, "LH") || igual(s, inicio, fim, "LB")
+                || igual(s, inicio, fim, "LHU") || igual(s, inicio, fim, "LBU"))
+            return LOAD;
+        if (igual(s, inicio, fim, "SW") || igual(s, inicio, fim, "SH") || igual(s, inicio, fim, "SB"))
+            return STORE;
+        if (igual(s, inicio, fim, "LUI"))
+            return LUI;
+        if (igual(s, inicio, fim, "AUIPC"))
+            return AUIPC;
+        // ADDI, ANDI, SLTIU, SRAI, ... e as pseudo-instruções LI, MV e NOP
+        if (ultimo == 'I' || igual(s, inicio, fim, "SLTIU") || igual(s, inicio, fim, "MV")
+                || igual(s, inicio, fim, "NOP"))
+            return ALU_IMM;
+        return ALU_REG;
+    }
+
+    private static int indice(CharSequence s, int inicio, int fim, char c) {
+        for (int i = inicio; i < fim; i++) {
+            if (s.charAt(i) == c)
+                return i;
+        }
+        return -1;
+    }
+
+    // Número decimal ou hexadecimal (0x), com sinal opcional; 0 se não for número
+    private static int numero(CharSequence s, int inicio, int fim) {
+        boolean negativo = inicio < fim && s.charAt(inicio) == '-';
+        if (negativo)
+            inicio++;
+        int base = 10;
+        if (fim - inicio > 2 && s.charAt(inicio) == '0' && Character.toUpperCase(s.charAt(inicio + 1)) == 'X') {
+            base = 16;
+            inicio += 2;
+        }
+        int valor = 0;
+        for (int i = inicio; i < fim; i++) {
+            char c = s.charAt(i);
+            int d = base == 16 ? valorHex(c) : (c >= '0' && c <= '9' ? c - '0' : -1);
+            if (d < 0)
+                return 0;
+            valor = valor * base + d;
+        }
+        return negativo ? -valor : valor;
+    }
+
+    // Número do registrador em tokens como R5, x5 ou nomes da ABI (a0, sp, t1, ...);
+    // 0 se não for registrador (imediato, rótulo)
+    private static int registrador(CharSequence s, int inicio, int fim) {
+        if (fim - inicio < 2)
+            return 0;
+        char c = Character.toUpperCase(s.charAt(inicio));
+        if ((c == 'R' || c == 'X') && fim - inicio <= 3 && ehDigito(s.charAt(inicio + 1))) {
+            int valor = 0;
+            for (int i = inicio + 1; i < fim; i++) {
+                char d = s.charAt(i);
+                if (!ehDigito(d))
+                    return 0;
+                valor = valor * 10 + (d - '0');
+            }
+            return valor < 32 ? valor : 0;
+        }
+
+        for (int r = 0; r < NOMES_ABI.length; r++) {
+            if (igual(s, inicio, fim, NOMES_ABI[r]))
+                return r;
+        }
+        return igual(s, inicio, fim, "FP") ? 8 : 0;
+    }
+
+    private static boolean ehDigito(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean igual(CharSequence s, int inicio, int fim, String palavra) {
+        if (fim - inicio != palavra.length())
+            return false;
+        for (int i = 0; i < palavra.length(); i++) {
+            if (Character.toUpperCase(s.charAt(inicio + i)) != palavra.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean ehSeparador(char c) {
+        return c == ' ' || c == ',' || c == '\t';
+    }
+
+    private static int pularSeparadores(CharSequence s, int i) {
+        while (i < s.length() && ehSeparador(s.charAt(i)))
+            i++;
+        return i;
+    }
+
+    // Reconhece uma palavra de 8 dígitos hexadecimais (com ou sem prefixo 0x)
+    public static boolean ehPalavraHex(CharSequence s) {
+        int inicio = temPrefixoHex(s) ? 2 : 0;
+        if (s.length() - inicio != 8)
+            return false;
+        for (int i = inicio; i < s.length(); i++) {
+            if (valorHex(s.charAt(i)) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    // Converte a palavra hexadecimal sem criar objetos intermediários
+    public static int lerPalavraHex(CharSequence s) {
+        int valor = 0;
+        for (int i = temPrefixoHex(s) ? 2 : 0; i < s.length(); i++)
+            valor = (valor << 4) | valorHex(s.charAt(i));
+        return valor;
+    }
+
+    private static boolean temPrefixoHex(CharSequence s) {
+        return s.length() > 2 && s.charAt(0) == '0' && (s.charAt(1) == 'x' || s.charAt(1) == 'X');
+    }
+
+    static int valorHex(char c) {
+        if (c >= '0' && c <= '9')
+            return c - '0';
+        if (c >= 'a' && c <= 'f')
+            return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F')
+            return c - 'A' + 10;
+        return -1;
+    }
+}
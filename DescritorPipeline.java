@@ -0,0 +1,141 @@
+// Descrição de um pipeline escalar em ordem: quantos estágios ele tem e em
+// qual estágio (contado a partir de 0 = primeira busca) cada coisa acontece.
+// As latências do placar, a folga do dado de um store, os NOPs de controle e
+// os pontos de parada do MotorCiclos saem daqui, em vez de constantes fixas.
+//
+// O último estágio é sempre o write-back. Os estágios antes da decodificação
+// são de busca, e os entre a execução e a memória são de execução.
+public class DescritorPipeline {
+    // IF, ID, EX, MEM, WB
+    public static final DescritorPipeline CLASSICO = new DescritorPipeline(5, 1, 2, 2, 3, 3, 3);
+
+    private final int estagios;
+    private final int decodificacao; // registradores lidos e destino de saltos conhecido
+    private final int execucao; // operandos consumidos pela ALU (destino do forwarding)
+    private final int resultadoAlu; // ao fim dele o resultado da ALU pode ser encaminhado
+    private final int memoria; // acesso à memória (e consumo do dado de um store)
+    private final int resultadoLoad; // ao fim dele o valor lido pode ser encaminhado
+    private final int resolucao; // desvio resolvido: a busca segue no ciclo seguinte
+    private final String[] nomes;
+
+    public DescritorPipeline(int estagios, int decodificacao, int execucao, int resultadoAlu, int memoria,
+            int resultadoLoad, int resolucao) {
+        if (!(0 < decodificacao && decodificacao < execucao && execucao <= resultadoAlu && resultadoAlu < memoria
+                && memoria <= resultadoLoad && resultadoLoad < estagios - 1)
+                || resolucao < decodificacao || resolucao >= estagios)
+            throw new IllegalArgumentException("Pipeline inválido: é preciso 0 < decodificação < execução"
+                    + " <= resultado da ALU < memória <= resultado do load < write-back = estágios - 1"
+                    + " e decodificação <= resolução < estágios");
+        this.estagios = estagios;
+        this.decodificacao = decodificacao;
+        this.execucao = execucao;
+        this.resultadoAlu = resultadoAlu;
+        this.memoria = memoria;
+        this.resultadoLoad = resultadoLoad;
+        this.resolucao = resolucao;
+        this.nomes = nomear();
+    }
+
+    // "5", "7" ou "10" estágios, ou a especificação
+    // "estagios:decodificacao:execucao:resultadoAlu:memoria:resultadoLoad:resolucao"
+    public static DescritorPipeline criar(String especificacao) {
+        switch (especificacao.trim()) {
+            case "5":
+                return CLASSICO;
+            case "7": // IF1 IF2 ID EX MEM1 MEM2 WB
+                return new DescritorPipeline(7, 2, 3, 3, 4, 5, 4);
+            case "10": // IF1 IF2 IF3 ID1 ID2 EX1 EX2 MEM1 MEM2 WB
+                return new DescritorPipeline(10, 3, 5, 5, 7, 8, 7);
+            default:
+                break;
+        }
+        String[] campos = especificacao.split(":");
+        if (campos.length != 7)
+            throw new IllegalArgumentException("Pipeline: use 5, 7, 10 ou estagios:decodificacao:execucao:"
+                    + "resultadoAlu:memoria:resultadoLoad:resolucao (" + especificacao + ")");
+        int[] v = new int[7];
+        for (int k = 0; k < 7; k++)
+            v[k] = Integer.parseInt(campos[k].trim());
+        return new DescritorPipeline(v[0], v[1], v[2], v[3], v[4], v[5], v[6]);
+    }
+
+    // Nome de cada estágio pelo papel, numerado quando o papel ocupa mais de um
+    private String[] nomear() {
+        String[] papel = new String[estagios];
+        for (int k = 0; k < estagios; k++)
+            papel[k] = k < decodificacao ? "IF" : k < execucao ? "ID" : k < memoria ? "EX"
+                    : k < estagios - 1 ? "MEM" : "WB";
+
+        String[] resultado = new String[estagios];
+        int numero = 0;
+        for (int k = 0; k < estagios; k++) {
+            numero = k > 0 && papel[k].equals(papel[k - 1]) ? numero + 1 : 1;
+            boolean repetido = numero > 1 || (k + 1 < estagios && papel[k + 1].equals(papel[k]));
+            resultado[k] = repetido ? papel[k] + numero : papel[k];
+        }
+        return resultado;
+    }
+
+    // Slots entre produtor e consumidor para o valor chegar a tempo. Sem
+    // forwarding o consumidor lê os registradores na decodificação depois do
+    // write-back do produtor; com forwarding o valor vai do fim do estágio de
+    // resultado direto para a execução.
+    public int latencia(boolean forwarding, boolean carga) {
+        if (!forwarding)
+            return estagios - decodificacao;
+        return (carga ? resultadoLoad : resultadoAlu) - execucao + 1;
+    }
+
+    // Slots a mais que o dado de um store pode esperar (consumido na memória)
+    public int folgaDadoStore(boolean forwarding) {
+        return forwarding ? memoria - execucao : 0;
+    }
+
+    // NOPs após um desvio/salto: a busca só segue depois da resolução
+    public int nopsControle() {
+        return resolucao;
+    }
+
+    // Maior número de slots que uma instrução pode ocupar: os NOPs de dados do
+    // pior caso (sem forwarding), ela mesma e os NOPs de controle
+    public int maxSlotsPorInstrucao() {
+        return latencia(false, true) + nopsControle();
+    }
+
+    public int estagios() {
+        return estagios;
+    }
+
+    public int decodificacao() {
+        return decodificacao;
+    }
+
+    public int execucao() {
+        return execucao;
+    }
+
+    public int resultadoAlu() {
+        return resultadoAlu;
+    }
+
+    public int memoria() {
+        return memoria;
+    }
+
+    public int resultadoLoad() {
+        return resultadoLoad;
+    }
+
+    public int resolucao() {
+        return resolucao;
+    }
+
+    public String nome(int estagio) {
+        return nomes[estagio];
+    }
+
+    // "IF/ID/EX/MEM/WB"
+    public String nomes() {
+        return String.join("/", nomes);
+    }
+}
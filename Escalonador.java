@@ -0,0 +1,236 @@
+import java.util.Arrays;
+
+// Escalonamento por lista dentro de cada bloco básico, antes da inserção de
+// NOPs: a cada slot escolhe, entre as instruções já liberadas pelas
+// dependências, a que espera menos pelo placar (a mais antiga em caso de
+// empate). Assim instruções independentes ocupam os slots que seriam de NOP.
+//
+// Restrições preservadas: RAW, WAR e WAW entre registradores, a ordem entre
+// acessos à memória quando um deles é store, e o desvio/salto no fim do bloco.
+// Os blocos mantêm as mesmas posições, então alvos de desvio e endereços de
+// retorno continuam apontando para o início de um bloco. Só as JANELA
+// instruções mais antigas ainda não emitidas são candidatas, o que mantém o
+// custo linear no tamanho do bloco.
+//
+// Com o programa lido em partes (LeitorTrace), um desvio de outra parte também
+// cria um início de bloco. Os alvos para frente são lembrados ao escalonar; os
+// para trás, vindos de partes ainda não lidas, precisam ser informados antes
+// por registrarAlvos, em uma passada prévia sobre a entrada.
+public class Escalonador {
+    private static final int JANELA = 16;
+    private static final long SEM_ALVO = Long.MIN_VALUE;
+
+    private final int latenciaAlu;
+    private final int latenciaLoad;
+    private final int nopsControle;
+
+    // Estado do fluxo emitido, mantido entre blocos como na análise
+    private final Scoreboard placar;
+    private int slot; // relativo ao início da parte, como em AnaliseHazards
+
+    // Alvos de desvio vindos de fora da parte (posições no programa inteiro),
+    // ainda não alcançados; ordenados só quando necessário
+    private long[] alvosExternos = new long[16];
+    private int quantidadeAlvos;
+    private boolean alvosOrdenados = true;
+    private long registradas; // instruções vistas por registrarAlvos
+    private long indiceBase; // posição da próxima parte no programa inteiro
+
+    private boolean[] lider = new boolean[0];
+    private int[] proximo = new int[0]; // lista encadeada das instruções ainda não emitidas
+
+    public Escalonador(boolean forwarding) {
+        this(DescritorPipeline.CLASSICO, forwarding);
+    }
+
+    public Escalonador(DescritorPipeline pipeline, boolean forwarding) {
+        this.latenciaAlu = pipeline.latencia(forwarding, false);
+        this.latenciaLoad = pipeline.latencia(forwarding, true);
+        this.nopsControle = pipeline.nopsControle();
+        this.placar = new Scoreboard(pipeline.folgaDadoStore(forwarding));
+    }
+
+    // Passada prévia: registra os alvos que saem da parte informada (as partes
+    // vêm na ordem do programa, como depois em escalonar)
+    public void registrarAlvos(Programa parte) {
+        int n = parte.tamanho();
+        for (int i = 0; i < n; i++) {
+            long alvo = alvo(parte, i);
+            if (alvo != SEM_ALVO && (alvo < 0 || alvo >= n) && registradas + alvo >= 0)
+                adicionarAlvo(registradas + alvo);
+        }
+        registradas += n;
+    }
+
+    // Preenche saida com as instruções de entrada reordenadas
+    public void escalonar(Programa entrada, Programa saida) {
+        int n = entrada.tamanho();
+        saida.limpar();
+        marcarLideres(entrada, n);
+
+        // Cada parte conta a partir de zero, para o slot não estourar em traces longos
+        placar.deslocar(-slot);
+        slot = 0;
+        indiceBase += n;
+
+        int inicio = 0;
+        for (int i = 1; i <= n; i++) {
+            if (i == n || lider[i]) {
+                escalonarBloco(entrada, saida, inicio, i);
+                inicio = i;
+            }
+        }
+    }
+
+    // Só para a verificação: começa a contagem em um slot arbitrário (perto do
+    // limite do int, por exemplo)
+    void iniciarSlot(int inicial) {
+        placar.deslocar(inicial - slot);
+        slot = inicial;
+    }
+
+    // Início de bloco: primeira instrução, alvo de desvio/JAL, instrução após
+    // controle, e as instruções que não podem mudar de posição ficam sozinhas
+    private void marcarLideres(Programa programa, int n) {
+        if (lider.length < n + 1) {
+            lider = new boolean[n + 1];
+            proximo = new int[n + 1];
+        }
+        Arrays.fill(lider, 0, n + 1, false);
+        marcarAlvosExternos(n);
+
+        boolean registrada = registradas >= indiceBase + n; // já vista por registrarAlvos
+        for (int i = 0; i < n; i++) {
+            int classe = programa.opcode(i);
+            if (Decodificador.ehControle(classe)) {
+                lider[i + 1] = true;
+                long alvo = alvo(programa, i);
+                if (alvo == SEM_ALVO) {
+                    continue;
+                } else if (alvo >= 0 && alvo < n) {
+                    lider[(int) alvo] = true;
+                } else if (alvo >= n) {
+                    if (!registrada)
+                        adicionarAlvo(indiceBase + alvo); // parte seguinte
+                } else if (!registrada && indiceBase + alvo >= 0) {
+                    throw new IllegalStateException("Desvio para uma parte já escalonada: com o programa"
+                            + " em partes, os alvos devem ser registrados antes (registrarAlvos)");
+                }
+            } else if (ehBarreira(classe)) {
+                lider[i] = true;
+                lider[i + 1] = true;
+            }
+        }
+    }
+
+    // Alvos de outras partes que caem nesta
+    private void marcarAlvosExternos(int n) {
+        if (!alvosOrdenados) {
+            Arrays.sort(alvosExternos, 0, quantidadeAlvos);
+            alvosOrdenados = true;
+        }
+        int k = 0;
+        for (; k < quantidadeAlvos && alvosExternos[k] < indiceBase + n; k++) {
+            if (alvosExternos[k] >= indiceBase)
+                lider[(int) (alvosExternos[k] - indiceBase)] = true;
+        }
+
+        // Os alcançados (e os de partes já escalonadas) não servem mais
+        System.arraycopy(alvosExternos, k, alvosExternos, 0, quantidadeAlvos - k);
+        quantidadeAlvos -= k;
+    }
+
+    private void adicionarAlvo(long alvo) {
+        if (quantidadeAlvos == alvosExternos.length)
+            alvosExternos = Arrays.copyOf(alvosExternos, quantidadeAlvos * 2);
+        if (quantidadeAlvos > 0 && alvo < alvosExternos[quantidadeAlvos - 1])
+            alvosOrdenados = false;
+        alvosExternos[quantidadeAlvos++] = alvo;
+    }
+
+    // Alvo relativo ao início da parte de um desvio/JAL em código de máquina,
+    // ou SEM_ALVO (JALR, outras classes, mnemônicos ou imediato desalinhado)
+    private static long alvo(Programa programa, int i) {
+        int classe = programa.opcode(i);
+        int imediato = programa.imediato(i);
+        if ((classe != Decodificador.DESVIO && classe != Decodificador.JAL) || programa.textoOriginal(i) != null
+                || (imediato & 3) != 0)
+            return SEM_ALVO;
+        return i + (imediato >> 2);
+    }
+
+    // AUIPC depende do próprio endereço; sistema, fence e linhas não reconhecidas
+    // não são movidas
+    private static boolean ehBarreira(int classe) {
+        return classe == Decodificador.AUIPC || classe == Decodificador.SISTEMA || classe == Decodificador.FENCE
+                || classe == Decodificador.INVALIDA;
+    }
+
+    private void escalonarBloco(Programa entrada, Programa saida, int inicio, int fim) {
+        int terminal = Decodificador.ehControle(entrada.opcode(fim - 1)) ? fim - 1 : -1;
+        int limite = terminal >= 0 ? terminal : fim;
+
+        // Cabeça da lista em proximo[fim]; -1 encerra
+        int cabeca = fim;
+        int anterior = cabeca;
+        for (int i = inicio; i < limite; i++) {
+            proximo[anterior] = i;
+            anterior = i;
+        }
+        proximo[anterior] = -1;
+
+        for (int restantes = limite - inicio; restantes > 0; restantes--) {
+            int escritas = 0;
+            int leituras = 0;
+            boolean memoria = false; // algum acesso à memória mais antigo ainda pendente
+            boolean store = false; // algum store mais antigo ainda pendente
+
+            int melhor = -1;
+            int antesDoMelhor = -1;
+            int menorEspera = Integer.MAX_VALUE;
+            int vistas = 0;
+            for (int ant = cabeca, j = proximo[cabeca]; j >= 0 && vistas < JANELA; ant = j, j = proximo[j], vistas++) {
+                int classe = entrada.opcode(j);
+                int usos = ((1 << entrada.rs1(j)) | (1 << entrada.rs2(j))) & ~1;
+                int escrita = (1 << entrada.rd(j)) & ~1;
+                boolean ehLoad = classe == Decodificador.LOAD;
+                boolean ehStore = classe == Decodificador.STORE;
+
+                boolean livre = (usos & escritas) == 0 && (escrita & (escritas | leituras)) == 0
+                        && !(ehStore && memoria) && !(ehLoad && store);
+                if (livre) {
+                    int espera = placar.espera(classe, entrada.rs1(j), entrada.rs2(j), slot);
+                    if (espera < menorEspera) {
+                        menorEspera = espera;
+                        melhor = j;
+                        antesDoMelhor = ant;
+                        if (espera == 0)
+                            break;
+                    }
+                }
+
+                escritas |= escrita;
+                leituras |= usos;
+                memoria |= ehLoad || ehStore;
+                store |= ehStore;
+            }
+
+            proximo[antesDoMelhor] = proximo[melhor];
+            emitir(entrada, saida, melhor);
+        }
+
+        if (terminal >= 0)
+            emitir(entrada, saida, terminal);
+    }
+
+    private void emitir(Programa entrada, Programa saida, int i) {
+        int classe = entrada.opcode(i);
+        slot += placar.espera(classe, entrada.rs1(i), entrada.rs2(i), slot);
+        placar.escrever(entrada.rd(i), slot + (classe == Decodificador.LOAD ? latenciaLoad : latenciaAlu),
+                classe == Decodificador.LOAD);
+        slot++;
+        if (Decodificador.ehControle(classe))
+            slot += nopsControle;
+        saida.adicionarDe(entrada, i);
+    }
+}
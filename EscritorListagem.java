@@ -0,0 +1,173 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Grava a listagem com endereços à medida que ela é produzida. As linhas são
+// montadas direto em um buffer de bytes reutilizado, que só vai para o disco
+// quando enche (ou no close), em blocos grandes.
+public class EscritorListagem implements Closeable {
+    // texto: endereço e instrução (mnemônico ou palavra); hex: só as palavras,
+    // uma por linha (pode ser lido de volta como entrada); binario: palavras de
+    // 32 bits little-endian
+    public static final String[] FORMATOS = {"texto", "hex", "binario"};
+    public static final int TEXTO = 0;
+    public static final int HEX = 1;
+    public static final int BINARIO = 2;
+    public static final int PALAVRA_NOP = 0x00000013; // ADDI x0, x0, 0
+
+    private static final int TAMANHO_BUFFER = 1 << 20;
+    private static final byte[] FIM_DE_LINHA = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final int LARGURA_MINIMA_ENDERECO = 4;
+
+    // Tabelas de dígitos: cada byte vira dois caracteres de uma vez
+    private static final byte[] PARES_MAIUSCULOS = tabelaPares("0123456789ABCDEF");
+    private static final byte[] PARES_MINUSCULOS = tabelaPares("0123456789abcdef");
+
+    private final WritableByteChannel canal;
+    private final ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_BUFFER);
+    private int larguraEndereco = LARGURA_MINIMA_ENDERECO; // dígitos após o "0x"
+
+    public EscritorListagem(Path arquivo) throws IOException {
+        this(FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    public EscritorListagem(WritableByteChannel canal) {
+        this.canal = canal;
+    }
+
+    public static int formato(String nome) {
+        for (int f = 0; f < FORMATOS.length; f++) {
+            if (FORMATOS[f].equals(nome))
+                return f;
+        }
+        throw new IllegalArgumentException("Formato desconhecido: " + nome + " (opções: "
+                + String.join(", ", FORMATOS) + ")");
+    }
+
+    // Extensão do arquivo de listagem em cada formato
+    public static String extensao(int formato) {
+        return formato == BINARIO ? ".bin" : formato == HEX ? ".hex" : ".txt";
+    }
+
+    // Ajusta a largura dos endereços ao tamanho do programa, para as colunas
+    // ficarem alinhadas; endereços maiores que o previsto ganham mais dígitos
+    public void definirMaiorEndereco(long maiorEndereco) {
+        larguraEndereco = Math.max(LARGURA_MINIMA_ENDERECO, digitosHex(maiorEndereco));
+    }
+
+    // Escreve "0x" seguido do endereço em hexadecimal maiúsculo, sem formatação de String
+    // (traces longos passam de 32 bits e ganham mais dígitos)
+    public void escreverEndereco(long endereco) throws IOException {
+        int digitos = Math.max(larguraEndereco, digitosHex(endereco));
+        garantir(digitos + 2);
+        byte[] dados = buffer.array();
+        int pos = buffer.position();
+        dados[pos] = '0';
+        dados[pos + 1] = 'x';
+        buffer.position(pos + 2 + digitos);
+        preencherHex(dados, pos + 2, digitos, endereco, PARES_MAIUSCULOS);
+    }
+
+    // Escreve a palavra de instrução com 8 dígitos minúsculos (mesmo formato da entrada)
+    public void escreverPalavra(int palavra) throws IOException {
+        garantir(8);
+        int pos = buffer.position();
+        buffer.position(pos + 8);
+        preencherHex(buffer.array(), pos, 8, palavra & 0xFFFFFFFFL, PARES_MINUSCULOS);
+    }
+
+    // Palavra em 4 bytes little-endian (formato binário)
+    public void escreverPalavraBinaria(int palavra) throws IOException {
+        garantir(4);
+        buffer.put((byte) palavra).put((byte) (palavra >>> 8)).put((byte) (palavra >>> 16))
+                .put((byte) (palavra >>> 24));
+    }
+
+    // Preenche os dígitos da direita para a esquerda, dois por consulta à tabela
+    private static void preencherHex(byte[] dados, int inicio, int digitos, long valor, byte[] pares) {
+        int pos = inicio + digitos;
+        while (pos - inicio >= 2) {
+            int par = (int) (valor & 0xFF) << 1;
+            dados[--pos] = pares[par + 1];
+            dados[--pos] = pares[par];
+            valor >>>= 8;
+        }
+        if (pos > inicio)
+            dados[--pos] = pares[((int) (valor & 0xF) << 1) + 1];
+    }
+
+    private static int digitosHex(long valor) {
+        return Math.max(1, (64 - Long.numberOfLeadingZeros(valor) + 3) / 4);
+    }
+
+    private static byte[] tabelaPares(String digitos) {
+        byte[] tabela = new byte[512];
+        for (int b = 0; b < 256; b++) {
+            tabela[b << 1] = (byte) digitos.charAt(b >>> 4);
+            tabela[(b << 1) + 1] = (byte) digitos.charAt(b & 0xF);
+        }
+        return tabela;
+    }
+
+    public void escrever(String texto) throws IOException {
+        int n = texto.length();
+        if (n > buffer.capacity()) {
+            escrever(texto.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        garantir(n);
+        for (int i = 0; i < n; i++) {
+            char c = texto.charAt(i);
+            if (c >= 0x80) { // fora do ASCII: desfaz e codifica em UTF-8
+                buffer.position(buffer.position() - i);
+                escrever(texto.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer.put((byte) c);
+        }
+    }
+
+    public void escrever(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.capacity()) {
+            descarregar();
+            ByteBuffer direto = ByteBuffer.wrap(bytes);
+            while (direto.hasRemaining())
+                canal.write(direto);
+            return;
+        }
+        garantir(bytes.length);
+        buffer.put(bytes);
+    }
+
+    public void novaLinha() throws IOException {
+        garantir(FIM_DE_LINHA.length);
+        buffer.put(FIM_DE_LINHA);
+    }
+
+    private void garantir(int bytes) throws IOException {
+        if (buffer.remaining() < bytes)
+            descarregar();
+    }
+
+    private void descarregar() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            canal.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            descarregar();
+        } finally {
+            canal.close();
+        }
+    }
+}
@@ -0,0 +1,448 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+// Execução funcional de programas RV32I em código de máquina: banco de
+// registradores, memória esparsa em páginas e o laço do PC. Cada instrução
+// executada é copiada para um bloco do fluxo dinâmico, junto com o seu pc e o
+// pc seguinte, e os blocos cheios vão para o consumidor (a análise de
+// conflitos), então desvios tomados e repetições contam como na execução real.
+//
+// Cada bloco básico é traduzido uma única vez, na primeira vez que o PC chega
+// ao seu início, para micro-operações com a operação já resolvida; a tradução
+// fica num cache indexado pelo endereço de entrada e é reaproveitada em
+// laços e chamadas recursivas.
+//
+// O programa fica a partir do endereço 0 (instrução i em 4 * i). A execução
+// para ao sair do programa, em ECALL/EBREAK, em instrução inválida ou ao
+// atingir o limite de passos.
+public class Executor {
+    public static final int PILHA_INICIAL = 0x7FFFFFF0;
+
+    // Memória: diretório de 1024 tabelas de 1024 páginas de 4 KiB (1024 palavras),
+    // alocadas só quando escritas
+    private static final int BITS_PAGINA = 12;
+    private static final int PALAVRAS_POR_PAGINA = 1 << (BITS_PAGINA - 2);
+
+    // Blocos mais longos são divididos; o fluxo sempre tem espaço para um bloco inteiro
+    private static final int MAX_BLOCO = 256;
+
+    // pc depois de uma instrução que encerra a execução (nenhum pc válido é ímpar)
+    private static final int PARADO = 1;
+
+    // Micro-operações: bits 0-5 operação, 6-10 rd, 11-15 rs1, 16-20 rs2
+    private static final int ADD = 0, SUB = 1, SLL = 2, SLT = 3, SLTU = 4, XOR = 5, SRL = 6, SRA = 7, OR = 8,
+            AND = 9;
+    private static final int ADDI = 10, SLLI = 11, SLTI = 12, SLTIU = 13, XORI = 14, SRLI = 15, SRAI = 16,
+            ORI = 17, ANDI = 18;
+    private static final int LB = 19, LH = 20, LW = 21, LBU = 22, LHU = 23;
+    private static final int SB = 24, SH = 25, SW = 26;
+    private static final int BEQ = 27, BNE = 28, BLT = 29, BGE = 30, BLTU = 31, BGEU = 32;
+    private static final int JAL = 33, JALR = 34, LUI = 35, AUIPC = 36, FENCE = 37, PARAR = 38;
+
+    // funct3 -> operação (-1 = codificação reservada)
+    private static final int[] ALU_REG = {ADD, SLL, SLT, SLTU, XOR, SRL, OR, AND};
+    private static final int[] ALU_IMM = {ADDI, SLLI, SLTI, SLTIU, XORI, SRLI, ORI, ANDI};
+    private static final int[] CARGAS = {LB, LH, LW, -1, LBU, LHU, -1, -1};
+    private static final int[] ESCRITAS = {SB, SH, SW, -1, -1, -1, -1, -1};
+    private static final int[] DESVIOS = {BEQ, BNE, -1, -1, BLT, BGE, BLTU, BGEU};
+
+    public interface ConsumidorFluxo {
+        void processar(Fluxo fluxo) throws IOException;
+    }
+
+    // Bloco básico traduzido: micro-operações e imediatos, e as máscaras de
+    // registradores que a análise de conflitos usa para reaproveitar o
+    // resultado do bloco sem percorrê-lo de novo
+    public static class BlocoTraduzido {
+        final int id; // posição no cache de traduções, em ordem de criação
+        final int indiceInicial; // instrução de entrada no programa
+        final int tamanho;
+        final int[] micro;
+        final int[] imediatos;
+        final int leituras; // registradores lidos antes de serem escritos no bloco
+        final int escritas;
+
+        BlocoTraduzido(int id, int indiceInicial, int tamanho, int[] micro, int[] imediatos, int leituras,
+                int escritas) {
+            this.id = id;
+            this.indiceInicial = indiceInicial;
+            this.tamanho = tamanho;
+            this.micro = micro;
+            this.imediatos = imediatos;
+            this.leituras = leituras;
+            this.escritas = escritas;
+        }
+
+        public int id() {
+            return id;
+        }
+
+        public int tamanho() {
+            return tamanho;
+        }
+
+        public int leituras() {
+            return leituras;
+        }
+
+        public int escritas() {
+            return escritas;
+        }
+    }
+
+    // Trecho do fluxo dinâmico entregue ao consumidor. pcs[k] é o endereço da
+    // instrução k e proximos[k] o da que executou depois dela; blocos[k] é o
+    // bloco traduzido que começa em k e foi executado inteiro (null nas demais)
+    public static class Fluxo {
+        private final Programa instrucoes = new Programa(LeitorTrace.INSTRUCOES_POR_BLOCO);
+        private final int[] pcs = new int[LeitorTrace.INSTRUCOES_POR_BLOCO];
+        private final int[] proximos = new int[LeitorTrace.INSTRUCOES_POR_BLOCO];
+        private final int[] enderecos = new int[LeitorTrace.INSTRUCOES_POR_BLOCO];
+        private final BlocoTraduzido[] blocos = new BlocoTraduzido[LeitorTrace.INSTRUCOES_POR_BLOCO];
+
+        public Programa instrucoes() {
+            return instrucoes;
+        }
+
+        public int[] pcs() {
+            return pcs;
+        }
+
+        public int[] proximos() {
+            return proximos;
+        }
+
+        // Endereço efetivo de cada load/store (sem significado nas demais)
+        public int[] enderecos() {
+            return enderecos;
+        }
+
+        public BlocoTraduzido blocoEm(int k) {
+            return blocos[k];
+        }
+
+        public int tamanho() {
+            return instrucoes.tamanho();
+        }
+
+        private int livre() {
+            return pcs.length - instrucoes.tamanho();
+        }
+
+        private void limpar() {
+            Arrays.fill(blocos, 0, instrucoes.tamanho(), null);
+            instrucoes.limpar();
+        }
+    }
+
+    private final Programa programa;
+    private final int[] x = new int[32];
+    private final int[][][] memoria = new int[1024][][];
+    private int pc;
+    private long passos;
+    private String motivoParada;
+
+    // Cache de traduções indexado pela instrução de entrada (pc >> 2)
+    private final BlocoTraduzido[] traducoes;
+    private int blocosTraduzidos;
+    private long blocosExecutados;
+
+    private final Fluxo fluxo = new Fluxo();
+    private final int[] enderecosBloco = new int[MAX_BLOCO]; // endereços de dados do bloco em execução
+
+    public Executor(Programa programa) {
+        for (int i = 0; i < programa.tamanho(); i++) {
+            if (programa.textoOriginal(i) != null)
+                throw new IllegalArgumentException("A execução exige código de máquina (linha " + (i + 1) + ": "
+                        + programa.textoOriginal(i) + ")");
+            escreverPalavra(i * 4, programa.palavra(i));
+        }
+        this.programa = programa;
+        this.traducoes = new BlocoTraduzido[programa.tamanho()];
+        x[2] = PILHA_INICIAL;
+    }
+
+    // Executa até parar ou completar limitePassos instruções; consumidor pode ser
+    // null para só executar. Retorna o número de instruções executadas.
+    public long executar(long limitePassos, ConsumidorFluxo consumidor) throws IOException {
+        int n = programa.tamanho();
+        long inicio = passos;
+        motivoParada = "limite de passos";
+
+        while (passos - inicio < limitePassos) {
+            if ((pc & 3) != 0 || Integer.compareUnsigned(pc >>> 2, n) >= 0) {
+                motivoParada = String.format("pc fora do programa (0x%X)", pc);
+                break;
+            }
+            BlocoTraduzido bloco = traducoes[pc >>> 2];
+            if (bloco == null)
+                bloco = traducoes[pc >>> 2] = traduzir(pc >>> 2);
+
+            int limite = (int) Math.min(bloco.tamanho, limitePassos - (passos - inicio));
+            if (consumidor != null && fluxo.livre() < limite) {
+                consumidor.processar(fluxo);
+                fluxo.limpar();
+            }
+
+            int pcBloco = pc;
+            int executadas = executarBloco(bloco, limite);
+            if (consumidor != null && executadas > 0)
+                registrar(bloco, pcBloco, executadas, executadas == bloco.tamanho);
+            passos += executadas;
+            blocosExecutados++;
+            if (pc == PARADO)
+                break;
+        }
+
+        if (consumidor != null && fluxo.tamanho() > 0) {
+            consumidor.processar(fluxo);
+            fluxo.limpar();
+        }
+        return passos - inicio;
+    }
+
+    // Acrescenta ao fluxo as instruções executadas do bloco; o pc seguinte da
+    // última é o pc atual
+    private void registrar(BlocoTraduzido bloco, int pcBloco, int executadas, boolean inteiro) {
+        int k = fluxo.tamanho();
+        fluxo.instrucoes.adicionarDe(programa, bloco.indiceInicial, executadas);
+        System.arraycopy(enderecosBloco, 0, fluxo.enderecos, k, executadas);
+        for (int j = 0; j < executadas; j++) {
+            fluxo.pcs[k + j] = pcBloco + 4 * j;
+            fluxo.proximos[k + j] = pcBloco + 4 * (j + 1);
+        }
+        if (pc != PARADO)
+            fluxo.proximos[k + executadas - 1] = pc;
+        if (inteiro)
+            fluxo.blocos[k] = bloco;
+    }
+
+    // Traduz o bloco básico que começa na instrução i: termina no primeiro
+    // desvio/salto, em instrução que para a execução, no fim do programa ou em
+    // MAX_BLOCO instruções
+    private BlocoTraduzido traduzir(int i) {
+        int n = Math.min(programa.tamanho() - i, MAX_BLOCO);
+        int[] micro = new int[n];
+        int[] imediatos = new int[n];
+        int leituras = 0;
+        int escritas = 0;
+
+        int tamanho = 0;
+        while (tamanho < n) {
+            int j = i + tamanho;
+            int operacao = operacao(programa.palavra(j), programa.opcode(j));
+            micro[tamanho] = operacao | programa.rd(j) << 6 | programa.rs1(j) << 11 | programa.rs2(j) << 16;
+            imediatos[tamanho] = operacao == PARAR ? programa.palavra(j) : programa.imediato(j);
+            tamanho++;
+
+            int usos = ((1 << programa.rs1(j)) | (1 << programa.rs2(j))) & ~1;
+            leituras |= usos & ~escritas;
+            escritas |= (1 << programa.rd(j)) & ~1;
+            if (operacao >= BEQ && operacao <= JALR || operacao == PARAR)
+                break;
+        }
+
+        if (tamanho < n) {
+            micro = Arrays.copyOf(micro, tamanho);
+            imediatos = Arrays.copyOf(imediatos, tamanho);
+        }
+        return new BlocoTraduzido(blocosTraduzidos++, i, tamanho, micro, imediatos, leituras, escritas);
+    }
+
+    private static int operacao(int palavra, int classe) {
+        int funct3 = (palavra >>> 12) & 0x7;
+        boolean bit30 = (palavra & (1 << 30)) != 0;
+        int operacao;
+        switch (classe) {
+            case Decodificador.ALU_REG:
+                if ((palavra >>> 25) != 0 && (palavra >>> 25) != 0x20)
+                    return PARAR; // fora do RV32I (por exemplo, extensão M)
+                operacao = ALU_REG[funct3];
+                if (bit30)
+                    operacao = funct3 == 0 ? SUB : funct3 == 5 ? SRA : PARAR;
+                return operacao;
+            case Decodificador.ALU_IMM:
+                // No formato I só o srai usa o bit 30; nos outros ele faz parte do imediato
+                return funct3 == 5 && bit30 ? SRAI : ALU_IMM[funct3];
+            case Decodificador.LOAD:
+                operacao = CARGAS[funct3];
+                break;
+            case Decodificador.STORE:
+                operacao = ESCRITAS[funct3];
+                break;
+            case Decodificador.DESVIO:
+                operacao = DESVIOS[funct3];
+                break;
+            case Decodificador.JAL:
+                return JAL;
+            case Decodificador.JALR:
+                return JALR;
+            case Decodificador.LUI:
+                return LUI;
+            case Decodificador.AUIPC:
+                return AUIPC;
+            case Decodificador.FENCE:
+                return FENCE;
+            default:
+                return PARAR; // ECALL, EBREAK, CSR e palavras inválidas
+        }
+        return operacao < 0 ? PARAR : operacao;
+    }
+
+    // Executa até limite instruções do bloco e deixa em pc o endereço seguinte
+    // (PARADO se a execução terminou). Retorna quantas instruções completaram.
+    private int executarBloco(BlocoTraduzido bloco, int limite) {
+        int[] micro = bloco.micro;
+        int[] imediatos = bloco.imediatos;
+        int[] x = this.x;
+        int[] enderecos = enderecosBloco;
+        int base = pc;
+
+        for (int k = 0; k < limite; k++) {
+            int m = micro[k];
+            int rd = (m >>> 6) & 0x1F;
+            int a = x[(m >>> 11) & 0x1F];
+            int b = x[(m >>> 16) & 0x1F];
+            int imm = imediatos[k];
+            int pcAtual = base + 4 * k;
+            int resultado;
+
+            // Os deslocamentos do Java em int já usam só os 5 bits baixos, como no RV32I
+            switch (m & 0x3F) {
+                case ADD: resultado = a + b; break;
+                case SUB: resultado = a - b; break;
+                case SLL: resultado = a << b; break;
+                case SLT: resultado = a < b ? 1 : 0; break;
+                case SLTU: resultado = Integer.compareUnsigned(a, b) < 0 ? 1 : 0; break;
+                case XOR: resultado = a ^ b; break;
+                case SRL: resultado = a >>> b; break;
+                case SRA: resultado = a >> b; break;
+                case OR: resultado = a | b; break;
+                case AND: resultado = a & b; break;
+                case ADDI: resultado = a + imm; break;
+                case SLLI: resultado = a << imm; break;
+                case SLTI: resultado = a < imm ? 1 : 0; break;
+                case SLTIU: resultado = Integer.compareUnsigned(a, imm) < 0 ? 1 : 0; break;
+                case XORI: resultado = a ^ imm; break;
+                case SRLI: resultado = a >>> imm; break;
+                case SRAI: resultado = a >> imm; break;
+                case ORI: resultado = a | imm; break;
+                case ANDI: resultado = a & imm; break;
+                case LB: resultado = (byte) lerByte(enderecos[k] = a + imm); break;
+                case LH: resultado = (short) lerMeia(enderecos[k] = a + imm); break;
+                case LW: resultado = carregarPalavra(enderecos[k] = a + imm); break;
+                case LBU: resultado = lerByte(enderecos[k] = a + imm); break;
+                case LHU: resultado = lerMeia(enderecos[k] = a + imm); break;
+                case SB: escreverByte(enderecos[k] = a + imm, b); continue;
+                case SH: escreverByte(enderecos[k] = a + imm, b); escreverByte(a + imm + 1, b >>> 8); continue;
+                case SW: armazenarPalavra(enderecos[k] = a + imm, b); continue;
+                case BEQ: pc = a == b ? pcAtual + imm : pcAtual + 4; return k + 1;
+                case BNE: pc = a != b ? pcAtual + imm : pcAtual + 4; return k + 1;
+                case BLT: pc = a < b ? pcAtual + imm : pcAtual + 4; return k + 1;
+                case BGE: pc = a >= b ? pcAtual + imm : pcAtual + 4; return k + 1;
+                case BLTU: pc = Integer.compareUnsigned(a, b) < 0 ? pcAtual + imm : pcAtual + 4; return k + 1;
+                case BGEU: pc = Integer.compareUnsigned(a, b) >= 0 ? pcAtual + imm : pcAtual + 4; return k + 1;
+                case JAL:
+                    if (rd != 0)
+                        x[rd] = pcAtual + 4;
+                    pc = pcAtual + imm;
+                    return k + 1;
+                case JALR:
+                    pc = (a + imm) & ~1; // alvo lido antes de escrever rd (jalr ra, 0(ra))
+                    if (rd != 0)
+                        x[rd] = pcAtual + 4;
+                    return k + 1;
+                case LUI: resultado = imm; break;
+                case AUIPC: resultado = pcAtual + imm; break;
+                case FENCE: continue;
+                default:
+                    parar(pcAtual, imm);
+                    pc = PARADO;
+                    return k;
+            }
+            if (rd != 0)
+                x[rd] = resultado;
+        }
+        pc = base + 4 * limite;
+        return limite;
+    }
+
+    private void parar(int pcAtual, int palavra) {
+        int classe = Decodificador.classe(Decodificador.decodificar(palavra));
+        String motivo = classe != Decodificador.SISTEMA ? "instrução inválida"
+                : ((palavra >>> 20) == 1 ? "EBREAK" : (palavra >>> 20) == 0 ? "ECALL" : "instrução de sistema");
+        motivoParada = String.format("%s em 0x%X (%08x)", motivo, pcAtual, palavra);
+    }
+
+    private int lerMeia(int endereco) {
+        return lerByte(endereco) | lerByte(endereco + 1) << 8;
+    }
+
+    private int carregarPalavra(int endereco) {
+        if ((endereco & 3) == 0)
+            return lerPalavra(endereco);
+        return lerByte(endereco) | lerByte(endereco + 1) << 8 | lerByte(endereco + 2) << 16
+                | lerByte(endereco + 3) << 24;
+    }
+
+    private void armazenarPalavra(int endereco, int valor) {
+        if ((endereco & 3) == 0) {
+            escreverPalavra(endereco, valor);
+            return;
+        }
+        for (int k = 0; k < 4; k++)
+            escreverByte(endereco + k, valor >>> (8 * k));
+    }
+
+    // Página da palavra no endereço, ou null se nunca foi escrita (lê como zero)
+    private int[] pagina(int endereco, boolean criar) {
+        int d = endereco >>> 22;
+        int t = (endereco >>> BITS_PAGINA) & 0x3FF;
+        int[][] tabela = memoria[d];
+        if (tabela == null) {
+            if (!criar)
+                return null;
+            tabela = memoria[d] = new int[1024][];
+        }
+        int[] pagina = tabela[t];
+        if (pagina == null && criar)
+            pagina = tabela[t] = new int[PALAVRAS_POR_PAGINA];
+        return pagina;
+    }
+
+    public int lerPalavra(int endereco) {
+        int[] pagina = pagina(endereco, false);
+        return pagina == null ? 0 : pagina[(endereco >>> 2) & (PALAVRAS_POR_PAGINA - 1)];
+    }
+
+    private void escreverPalavra(int endereco, int valor) {
+        pagina(endereco, true)[(endereco >>> 2) & (PALAVRAS_POR_PAGINA - 1)] = valor;
+    }
+
+    private int lerByte(int endereco) {
+        return (lerPalavra(endereco) >>> (8 * (endereco & 3))) & 0xFF;
+    }
+
+    private void escreverByte(int endereco, int valor) {
+        int deslocamento = 8 * (endereco & 3);
+        int[] pagina = pagina(endereco, true);
+        int j = (endereco >>> 2) & (PALAVRAS_POR_PAGINA - 1);
+        pagina[j] = (pagina[j] & ~(0xFF << deslocamento)) | ((valor & 0xFF) << deslocamento);
+    }
+
+    public int registrador(int r) {
+        return x[r];
+    }
+
+    public int pc() {
+        return pc;
+    }
+
+    public long passos() {
+        return passos;
+    }
+
+    public String motivoParada() {
+        return motivoParada;
+    }
+}
@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Lê o arquivo de instruções em partes, por um canal NIO, e entrega blocos
+// de instruções já decodificadas ao consumidor. O mesmo Programa é reutilizado
+// como bloco, então a memória usada não depende do tamanho do arquivo.
+public class LeitorTrace {
+    public static final int INSTRUCOES_POR_BLOCO = 1 << 16;
+    private static final int TAMANHO_BUFFER = 1 << 20;
+
+    public interface ConsumidorBloco {
+        void processar(Programa bloco) throws IOException;
+    }
+
+    // Retorna o número de instruções lidas
+    public static long ler(Path arquivo, ConsumidorBloco consumidor) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            return ler(canal, consumidor);
+        }
+    }
+
+    // Programa inteiro na memória, para quem precisa dele todo de uma vez: é
+    // montado com os mesmos blocos, então só as colunas ocupam memória (nunca
+    // uma lista com as linhas do arquivo)
+    public static Programa carregar(Path arquivo) throws IOException {
+        Programa programa = new Programa();
+        ler(arquivo, bloco -> programa.adicionarDe(bloco, 0, bloco.tamanho()));
+        return programa;
+    }
+
+    public static long ler(ReadableByteChannel canal, ConsumidorBloco consumidor) throws IOException {
+        Programa bloco = new Programa(INSTRUCOES_POR_BLOCO);
+        ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_BUFFER);
+        byte[] linha = new byte[128]; // linha em montagem (pode cruzar leituras)
+        int tamanhoLinha = 0;
+        long total = 0;
+
+        while (canal.read(buffer) != -1) {
+            byte[] dados = buffer.array();
+            int fim = buffer.position();
+
+            for (int i = 0; i < fim; i++) {
+                byte b = dados[i];
+                if (b != '\n') {
+                    if (tamanhoLinha == linha.length)
+                        linha = Arrays.copyOf(linha, linha.length * 2);
+                    linha[tamanhoLinha++] = b;
+                    continue;
+                }
+
+                total += adicionarLinha(bloco, linha, tamanhoLinha);
+                tamanhoLinha = 0;
+                if (bloco.tamanho() == bloco.capacidade())
+                    entregar(bloco, consumidor);
+            }
+            buffer.clear();
+        }
+
+        total += adicionarLinha(bloco, linha, tamanhoLinha); // última linha sem '\n'
+        if (bloco.tamanho() > 0)
+            entregar(bloco, consumidor);
+        return total;
+    }
+
+    private static void entregar(Programa bloco, ConsumidorBloco consumidor) throws IOException {
+        consumidor.processar(bloco);
+        bloco.limpar();
+    }
+
+    // Palavras hexadecimais são convertidas direto dos bytes; só linhas em
+    // mnemônicos viram String (o texto é usado na listagem)
+    private static int adicionarLinha(Programa bloco, byte[] linha, int tamanho) {
+        int inicio = 0;
+        int fim = tamanho;
+        while (inicio < fim && ehEspaco(linha[inicio]))
+            inicio++;
+        while (fim > inicio && ehEspaco(linha[fim - 1]))
+            fim--;
+        if (inicio == fim)
+            return 0;
+
+        int inicioHex = inicio;
+        if (fim - inicio == 10 && linha[inicio] == '0' && (linha[inicio + 1] == 'x' || linha[inicio + 1] == 'X'))
+            inicioHex += 2;
+        if (fim - inicioHex == 8) {
+            int palavra = 0;
+            int i = inicioHex;
+            for (; i < fim; i++) {
+                int digito = Decodificador.valorHex((char) linha[i]);
+                if (digito < 0)
+                    break;
+                palavra = (palavra << 4) | digito;
+            }
+            if (i == fim) {
+                bloco.adicionarPalavra(palavra);
+                return 1;
+            }
+        }
+
+        bloco.adicionarLinha(new String(linha, inicio, fim - inicio, StandardCharsets.UTF_8));
+        return 1;
+    }
+
+    private static boolean ehEspaco(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
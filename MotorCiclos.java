@@ -0,0 +1,498 @@
+import java.util.Arrays;
+
+// Simulação ciclo a ciclo de um pipeline escalar em ordem descrito por um
+// DescritorPipeline (o clássico IF, ID, EX, MEM, WB por padrão). Cada estágio
+// guarda em arrays primitivos a classe da instrução (BOLHA = vazio), o
+// registrador destino e a máscara de fontes, então nenhum objeto é criado por
+// ciclo e a instrução não depende mais do bloco de onde foi buscada.
+//
+// Com caches, uma falta na busca atrasa a entrada da instrução no IF, e uma
+// falta de load/store retém a instrução no MEM (e tudo atrás dela) pela
+// latência da falta. Os endereços de dados só existem no fluxo de execução.
+//
+// Conflitos estruturais são opcionais: com memória unificada a busca e o MEM
+// disputam uma só porta (o load/store tem prioridade e a busca perde o ciclo),
+// e com menos portas no banco de registradores a instrução em ID fica retida
+// até conseguir ler todos os fontes.
+public class MotorCiclos {
+    private static final int BOLHA = -1;
+
+    private final boolean forwarding;
+
+    // Estágios de cada papel, tirados do descritor. A instrução espera pelos
+    // operandos na decodificação (ID); o destino de um salto é conhecido lá e
+    // um desvio é resolvido em resolucao.
+    private final DescritorPipeline pipeline;
+    private final int estagios;
+    private final int decodificacao;
+    private final int execucao;
+    private final int memoria;
+    private final int writeBack;
+    private final int alcanceForwarding; // último estágio de onde um produtor ainda pode segurar o ID
+
+    // Registradores de pipeline em um buffer circular: o estágio k fica na
+    // posição (base + k) & mascara, então avançar tudo é só decrementar a base.
+    // usos: fontes consumidos na execução; dados: o dado de um store, consumido só na memória
+    private final int mascara;
+    private int base;
+    private final int[] classe;
+    private final int[] rd;
+    private final int[] usos;
+    private final int[] dados;
+    private final int[] endereco;
+    private int leiturasFeitas; // fontes que a instrução em ID já leu do banco
+    private boolean bloqueioPorCarga; // a última dependência pendente encontrada é de um load
+
+    private Programa bloco; // bloco de onde as instruções estão sendo buscadas
+    private int[] pcs; // fluxo dinâmico: pc de cada instrução do bloco e o da seguinte
+    private int[] proximos; // (null no fluxo estático)
+    private int[] enderecos; // endereço de dados de cada load/store (fluxo dinâmico)
+    private int proximaBusca; // próxima instrução do bloco a buscar
+    private boolean iniciado;
+    private long buscadas; // instruções buscadas desde o início (pc = 4 * índice)
+
+    // Busca bloqueada por um desvio: posição atual dele no pipeline (-1 = livre)
+    // e o estágio que ele precisa alcançar para a busca seguir
+    private int posicaoControle = -1;
+    private int liberacaoControle;
+    private boolean bloqueioPorErro; // bolhas atuais são penalidade de previsão errada
+
+    // Sem preditor, a busca sempre para até o desvio ser resolvido
+    private PreditorDesvios preditor;
+
+    // Caches L1 (null = acesso sempre em um ciclo)
+    private Cache cacheInstrucoes;
+    private Cache cacheDados;
+    private int esperaBusca = -1; // ciclos que faltam para a busca atual (-1 = cache ainda não consultada)
+    private int esperaMemoria; // ciclos que a instrução no MEM ainda fica retida
+
+    // Recursos compartilhados (o padrão não tem conflitos estruturais)
+    private boolean memoriaUnificada;
+    private int portasLeitura = 2;
+    private int portasEscrita = 1; // 0 = a escrita do WB ocupa uma das portas de leitura
+
+    // Resultados
+    private long ciclos;
+    private long instrucoesConcluidas;
+    private long ciclosParadaDados;
+    private long ciclosParadaLoadUso; // parte das paradas de dados causada por um load
+    private long ciclosBolhaControle;
+    private long desviosPrevistos;
+    private long previsoesErradas;
+    private long ciclosPenalidadeErro;
+    private long ciclosParadaCacheInstrucoes;
+    private long ciclosParadaCacheDados;
+    private long conflitosPortaMemoria; // buscas adiadas (um ciclo cada)
+    private long conflitosBancoRegistradores; // instruções retidas em ID por falta de porta
+    private long ciclosParadaBancoRegistradores;
+    // Ciclos a mais que cada estágio ficou ocupado por uma instrução retida; a
+    // ocupação total soma a isso uma passagem de cada instrução buscada
+    private final long[] ocupacaoRetida;
+
+    public MotorCiclos(boolean forwarding) {
+        this(DescritorPipeline.CLASSICO, forwarding);
+    }
+
+    public MotorCiclos(DescritorPipeline pipeline, boolean forwarding) {
+        this.forwarding = forwarding;
+        this.pipeline = pipeline;
+        this.estagios = pipeline.estagios();
+        this.decodificacao = pipeline.decodificacao();
+        this.execucao = pipeline.execucao();
+        this.memoria = pipeline.memoria();
+        this.writeBack = estagios - 1;
+        this.alcanceForwarding = pipeline.resultadoLoad() + decodificacao - execucao;
+        int capacidade = Integer.highestOneBit(estagios - 1) << 1;
+        this.mascara = capacidade - 1;
+        this.classe = new int[capacidade];
+        this.rd = new int[capacidade];
+        this.usos = new int[capacidade];
+        this.dados = new int[capacidade];
+        this.endereco = new int[capacidade];
+        this.ocupacaoRetida = new long[estagios];
+        Arrays.fill(classe, BOLHA);
+    }
+
+    // Deve ser chamado antes do primeiro bloco
+    public void definirPreditor(PreditorDesvios preditor) {
+        this.preditor = preditor;
+    }
+
+    // Deve ser chamado antes do primeiro bloco; qualquer uma pode ser null
+    public void definirCaches(Cache instrucoes, Cache dados) {
+        this.cacheInstrucoes = instrucoes;
+        this.cacheDados = dados;
+    }
+
+    // Deve ser chamado antes do primeiro bloco. leitura >= 1; escrita 0 faz o
+    // WB usar uma das portas de leitura no ciclo em que escreve
+    public void definirEstrutura(boolean memoriaUnificada, int portasLeitura, int portasEscrita) {
+        if (portasLeitura < 1 || portasEscrita < 0)
+            throw new IllegalArgumentException("Portas do banco de registradores: leitura >= 1 e escrita >= 0 ("
+                    + portasLeitura + "/" + portasEscrita + ")");
+        this.memoriaUnificada = memoriaUnificada;
+        this.portasLeitura = portasLeitura;
+        this.portasEscrita = portasEscrita;
+    }
+
+    // Executa ciclos até todas as instruções do bloco terem sido buscadas; o que
+    // ainda está no pipeline continua no próximo bloco ou em finalizar()
+    public void alimentar(Programa bloco) {
+        alimentar(bloco, null, null, null);
+    }
+
+    // Trecho de um fluxo de execução: os desvios seguem os resultados reais e
+    // os loads/stores acessam os endereços efetivos
+    public void alimentar(Executor.Fluxo fluxo) {
+        alimentar(fluxo.instrucoes(), fluxo.pcs(), fluxo.proximos(), fluxo.enderecos());
+    }
+
+    private void alimentar(Programa bloco, int[] pcs, int[] proximos, int[] enderecos) {
+        this.bloco = bloco;
+        this.pcs = pcs;
+        this.proximos = proximos;
+        this.enderecos = enderecos;
+        this.proximaBusca = 0;
+        if (!iniciado) {
+            iniciado = true;
+            buscar();
+        }
+        while (proximaBusca < bloco.tamanho())
+            ciclo();
+    }
+
+    // Fim da entrada: esvazia o pipeline
+    public void finalizar() {
+        bloco = null;
+        while (ocupado())
+            ciclo();
+    }
+
+    private boolean ocupado() {
+        for (int k = 0; k < estagios; k++) {
+            if (classe[posicao(k)] != BOLHA)
+                return true;
+        }
+        return false;
+    }
+
+    private void ciclo() {
+        ciclos++;
+
+        // WB: a instrução termina neste ciclo
+        if (classe[posicao(writeBack)] != BOLHA)
+            instrucoesConcluidas++;
+
+        // Falta na cache de dados: o MEM e os estágios anteriores ficam parados
+        if (esperaMemoria > 0) {
+            esperaMemoria--;
+            avancarApos(memoria);
+            ciclosParadaCacheDados++;
+            return;
+        }
+
+        // O desvio que bloqueia a busca chegou ao estágio de liberação; a busca
+        // volta neste ciclo
+        if (posicaoControle == liberacaoControle)
+            posicaoControle = -1;
+
+        boolean parada = classe[posicao(decodificacao)] != BOLHA && dependenciaPendente();
+        boolean paradaPorCarga = parada && bloqueioPorCarga; // antes de o pipeline avançar
+        boolean paradaPortas = !parada && classe[posicao(decodificacao)] != BOLHA && faltamPortas();
+
+        // Da busca ao ID tudo fica retido na parada; depois do ID tudo avança
+        if (posicaoControle >= 0 && (!parada && !paradaPortas || posicaoControle > decodificacao))
+            posicaoControle++;
+
+        // Avança o pipeline
+        if (parada || paradaPortas)
+            avancarApos(decodificacao);
+        else
+            base = (base - 1) & mascara;
+        if (cacheDados != null && enderecos != null && acessaMemoria(classe[posicao(memoria)]))
+            esperaMemoria = cacheDados.acessar(endereco[posicao(memoria)]);
+        if (parada) {
+            ciclosParadaDados++;
+            if (paradaPorCarga)
+                ciclosParadaLoadUso++;
+            leiturasFeitas = 0; // os fontes são lidos de novo quando ficarem prontos
+            return;
+        }
+        if (paradaPortas) {
+            ciclosParadaBancoRegistradores++;
+            return;
+        }
+        leiturasFeitas = 0;
+        buscar();
+    }
+
+    // Os estágios depois de retido avançam e uma bolha entra logo após ele:
+    // avança tudo e devolve os estágios até retido para a posição anterior
+    private void avancarApos(int retido) {
+        base = (base - 1) & mascara;
+        for (int k = 0; k <= retido; k++) {
+            copiar(posicao(k + 1), posicao(k));
+            if (classe[posicao(k)] != BOLHA)
+                ocupacaoRetida[k]++;
+        }
+        classe[posicao(retido + 1)] = BOLHA;
+    }
+
+    private static boolean acessaMemoria(int classe) {
+        return classe == Decodificador.LOAD || classe == Decodificador.STORE;
+    }
+
+    private int posicao(int estagio) {
+        return (base + estagio) & mascara;
+    }
+
+    private void copiar(int de, int para) {
+        classe[para] = classe[de];
+        rd[para] = rd[de];
+        usos[para] = usos[de];
+        dados[para] = dados[de];
+        endereco[para] = endereco[de];
+    }
+
+    private void buscar() {
+        classe[posicao(0)] = BOLHA;
+        if (bloco == null || proximaBusca >= bloco.tamanho())
+            return;
+        if (posicaoControle >= 0) {
+            ciclosBolhaControle++;
+            if (bloqueioPorErro)
+                ciclosPenalidadeErro++;
+            return;
+        }
+        // Porta única: o load/store que acabou de entrar no MEM usa a memória no próximo ciclo
+        if (memoriaUnificada && acessaMemoria(classe[posicao(memoria)])) {
+            conflitosPortaMemoria++;
+            return;
+        }
+
+        int i = proximaBusca;
+        int pc = pcs != null ? pcs[i] : (int) (buscadas * 4);
+        if (cacheInstrucoes != null) {
+            if (esperaBusca < 0)
+                esperaBusca = cacheInstrucoes.acessar(pc);
+            if (esperaBusca > 0) {
+                esperaBusca--;
+                ciclosParadaCacheInstrucoes++;
+                return;
+            }
+            esperaBusca = -1;
+        }
+
+        proximaBusca++;
+        buscadas++;
+        int e = posicao(0);
+        if (enderecos != null)
+            endereco[e] = enderecos[i];
+        classe[e] = bloco.opcode(i);
+        rd[e] = bloco.rd(i);
+        if (classe[e] == Decodificador.STORE) {
+            usos[e] = (1 << bloco.rs1(i)) & ~1; // x0 nunca depende de ninguém
+            dados[e] = (1 << bloco.rs2(i)) & ~1;
+        } else {
+            usos[e] = ((1 << bloco.rs1(i)) | (1 << bloco.rs2(i))) & ~1;
+            dados[e] = 0;
+        }
+        if (Decodificador.ehControle(classe[e]))
+            preverControle(i, pc);
+    }
+
+    // Decide até onde o desvio recém-buscado bloqueia a busca. No fluxo estático
+    // a instrução seguinte é sempre a próxima da listagem: os desvios
+    // condicionais contam como não tomados e os saltos como tomados. No fluxo
+    // dinâmico vale o pc que de fato executou em seguida.
+    private void preverControle(int i, int pc) {
+        posicaoControle = 0;
+        bloqueioPorErro = false;
+        if (preditor == null) {
+            liberacaoControle = pipeline.resolucao();
+            return;
+        }
+
+        int classe = this.classe[posicao(0)];
+        boolean tomado;
+        int alvo;
+        if (proximos != null) {
+            tomado = proximos[i] != pc + 4 || classe != Decodificador.DESVIO;
+            alvo = classe == Decodificador.JALR ? proximos[i] : pc + bloco.imediato(i);
+        } else {
+            tomado = classe != Decodificador.DESVIO;
+            alvo = classe != Decodificador.JALR && bloco.textoOriginal(i) == null ? pc + bloco.imediato(i) : -1;
+        }
+
+        int alvoBusca = preditor.alvoNaBusca(pc);
+        boolean previsto = classe != Decodificador.DESVIO || preditor.preverTomado(pc, alvo);
+        if (classe == Decodificador.DESVIO) {
+            preditor.atualizar(pc, tomado, alvo);
+            desviosPrevistos++;
+        } else {
+            preditor.registrarSalto(pc, alvo);
+        }
+
+        if (previsto != tomado || (alvoBusca >= 0 && alvo >= 0 && alvoBusca != alvo)) {
+            previsoesErradas++;
+            bloqueioPorErro = true;
+            liberacaoControle = pipeline.resolucao();
+        } else if (!tomado || alvoBusca >= 0) {
+            posicaoControle = -1; // previsão certa com o destino já na busca: sem bolhas
+        } else {
+            // Tomado sem BTB: o destino sai do ID; o do JALR depende de registrador
+            // (no fluxo dinâmico alvo é o pc executado, que o ID não conhece)
+            liberacaoControle = classe != Decodificador.JALR && alvo >= 0 ? decodificacao : pipeline.resolucao();
+        }
+    }
+
+    // A instrução em ID lê um registrador que uma instrução mais antiga ainda não
+    // disponibilizou? Sem forwarding o valor só existe após o WB e todos os
+    // fontes são lidos no ID. Com forwarding o valor sai do fim do estágio de
+    // resultado do produtor e precisa chegar até o consumidor alcançar a
+    // execução (o dado de um store só na memória). Só conta o produtor mais
+    // novo de cada registrador, que é o valor que seria encaminhado.
+    private boolean dependenciaPendente() {
+        int id = posicao(decodificacao);
+        int fontes = usos[id];
+        int dadoStore = dados[id];
+        int vistos = 0;
+        boolean pendente = false;
+        bloqueioPorCarga = false;
+
+        // Com forwarding, produtores além do alcance já têm o valor pronto a tempo
+        int ultimo = forwarding ? alcanceForwarding : writeBack;
+        for (int k = decodificacao + 1; k <= ultimo && ((fontes | dadoStore) & ~vistos) != 0; k++) {
+            int e = posicao(k);
+            if (classe[e] == BOLHA)
+                continue;
+            int escrita = (1 << rd[e]) & ~vistos & ~1;
+            vistos |= escrita;
+            if (((fontes | dadoStore) & escrita) == 0)
+                continue;
+
+            boolean carga = classe[e] == Decodificador.LOAD;
+            if (forwarding) {
+                int resultado = carga ? pipeline.resultadoLoad() : pipeline.resultadoAlu();
+                int consumo = (fontes & escrita) != 0 ? execucao : memoria;
+                if (k + consumo - decodificacao > resultado)
+                    continue; // o valor chega pelo forwarding
+            }
+            pendente = true;
+            bloqueioPorCarga |= carga;
+        }
+        return pendente;
+    }
+
+    // A instrução em ID ainda tem fontes a ler e as portas livres neste ciclo
+    // não bastam? As leituras feitas ficam acumuladas para o ciclo seguinte.
+    private boolean faltamPortas() {
+        int livres = portasLeitura;
+        int wb = posicao(writeBack);
+        if (portasEscrita == 0 && classe[wb] != BOLHA && rd[wb] != 0)
+            livres--; // o WB tem prioridade na porta compartilhada
+        int id = posicao(decodificacao);
+        int faltam = Integer.bitCount(usos[id] | dados[id]) - leiturasFeitas;
+        if (faltam <= livres)
+            return false;
+        if (leiturasFeitas == 0)
+            conflitosBancoRegistradores++;
+        leiturasFeitas += livres;
+        return true;
+    }
+
+    public long ciclos() {
+        return ciclos;
+    }
+
+    public long instrucoesConcluidas() {
+        return instrucoesConcluidas;
+    }
+
+    public double cpi() {
+        return instrucoesConcluidas == 0 ? 0 : (double) ciclos / instrucoesConcluidas;
+    }
+
+    public long ciclosParadaDados() {
+        return ciclosParadaDados;
+    }
+
+    public long ciclosParadaLoadUso() {
+        return ciclosParadaLoadUso;
+    }
+
+    public long ciclosBolhaControle() {
+        return ciclosBolhaControle;
+    }
+
+    public PreditorDesvios preditor() {
+        return preditor;
+    }
+
+    public long desviosPrevistos() {
+        return desviosPrevistos;
+    }
+
+    public long previsoesErradas() {
+        return previsoesErradas;
+    }
+
+    public long ciclosPenalidadeErro() {
+        return ciclosPenalidadeErro;
+    }
+
+    public Cache cacheInstrucoes() {
+        return cacheInstrucoes;
+    }
+
+    public Cache cacheDados() {
+        return cacheDados;
+    }
+
+    public long ciclosParadaCacheInstrucoes() {
+        return ciclosParadaCacheInstrucoes;
+    }
+
+    public long ciclosParadaCacheDados() {
+        return ciclosParadaCacheDados;
+    }
+
+    public boolean temConflitosEstruturais() {
+        return memoriaUnificada || portasLeitura < 2 || portasEscrita == 0;
+    }
+
+    public long conflitosEstruturais() {
+        return conflitosPortaMemoria + conflitosBancoRegistradores;
+    }
+
+    public long conflitosPortaMemoria() {
+        return conflitosPortaMemoria;
+    }
+
+    public long conflitosBancoRegistradores() {
+        return conflitosBancoRegistradores;
+    }
+
+    // Ciclos perdidos por conflitos estruturais (cada busca adiada custa um ciclo)
+    public long ciclosParadaEstrutural() {
+        return conflitosPortaMemoria + ciclosParadaBancoRegistradores;
+    }
+
+    public DescritorPipeline pipeline() {
+        return pipeline;
+    }
+
+    // Ciclos em que cada estágio esteve ocupado, na ordem do pipeline. Cada
+    // instrução buscada passa um ciclo por estágio, exceto as que ainda não
+    // chegaram a ele (as que estão agora nele ou antes)
+    public long[] ocupacao() {
+        long[] ocupacao = new long[estagios];
+        long aindaNaoContadas = 0;
+        for (int k = 0; k < estagios; k++) {
+            if (classe[posicao(k)] != BOLHA)
+                aindaNaoContadas++;
+            ocupacao[k] = buscadas - aindaNaoContadas + ocupacaoRetida[k];
+        }
+        return ocupacao;
+    }
+}
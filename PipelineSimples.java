@@ -1,101 +1,341 @@
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 
+// Uso: java PipelineSimples [opções] [arquivos ou globs...]
+//   --saida DIR             diretório das listagens (padrão: o atual)
+//   --formato texto|hex|binario
+//   --modos estatico,execucao   (a execução só vale para código de máquina;
+//                           pedida para um texto, é ignorada com um aviso)
+//   --forwarding sem,com
+//   --threads N             análises de um mesmo bloco em paralelo
+//   --paralelo              análise estática fork-join do programa inteiro na
+//                           memória, com N threads (só conflitos e NOPs, sem ciclos)
+//   --so-estatisticas       não gera as listagens (o mais caro em entradas grandes)
+//   --silencioso            não imprime os resumos
+//   --pipeline 5|7|10|spec  --escalonamento  --preditor nome
+//   --cache-i spec  --cache-d spec  --memoria-unificada  --portas leitura/escrita
+//   --limite N              instruções executadas no máximo
+//   --registradores         imprime os registradores não nulos ao fim da execução
+// Sem argumentos, analisa fib_rec_hexadecimal.txt como antes. Globs valem no
+// último componente do caminho (por exemplo testes/*.txt).
 public class PipelineSimples {
-    public static void main(String[] args) throws IOException {
-        // String arquivoEntrada = "instrucoes.txt";
-        String arquivoEntrada = "fib_rec_hexadecimal.txt";
-
-        // Lê todas as instruções do arquivo
-        List<String> instrucoes = Files.readAllLines(Paths.get(arquivoEntrada));
+    static final long LIMITE_PASSOS = 100_000_000L;
+    private static final String ENTRADA_PADRAO = "fib_rec_hexadecimal.txt";
 
-        System.out.println("SIMULADOR DE PIPELINE");
-        System.out.println("Instruções originais: " + instrucoes.size() + "\n");
+    // Opções da linha de comando
+    static class Opcoes {
+        final List<Path> entradas = new ArrayList<>();
+        Path diretorioSaida = Paths.get("");
+        int formato = EscritorListagem.TEXTO;
+        boolean estatico = true;
+        boolean execucao = true;
+        boolean modosInformados; // --modos na linha de comando (senão a execução é só "quando der")
+        boolean semForwarding = true;
+        boolean comForwarding = true;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean soEstatisticas;
+        boolean silencioso;
+        boolean paralelo;
+        boolean registradores;
+        long limitePassos = LIMITE_PASSOS;
+        ConfiguracaoAnalise configuracao = ConfiguracaoAnalise.padrao(false);
 
-        // Simula os dois modos
-        simularPipeline(instrucoes, false); // sem forwarding
-        simularPipeline(instrucoes, true); // com forwarding
-    }
+        static Opcoes ler(String[] args) throws IOException {
+            Opcoes opcoes = new Opcoes();
+            String pipeline = "5";
+            boolean escalonamento = false;
+            String preditor = ConfiguracaoAnalise.SEM_PREDITOR;
+            String cacheInstrucoes = ConfiguracaoAnalise.SEM_CACHE;
+            String cacheDados = ConfiguracaoAnalise.SEM_CACHE;
+            boolean memoriaUnificada = false;
+            String portas = "2/1";
 
-    public static void simularPipeline(List<String> instrucoes, boolean forwarding) throws IOException {
-        List<String> saida = new ArrayList<>(); // linhas de saída com endereços
-        Map<Integer, String> mapa = new LinkedHashMap<>(); // mantém a ordem das instruções com endereços
-
-        // Contadores de conflitos e NOPs
-        int conflitosDados = 0;
-        int conflitosControle = 0;
-        int nopsInseridos = 0;
-        int endereco = 0; // endereço inicial
-        String regDestinoAnterior = ""; // registrador destino da instrução anterior
-
-        // Percorre todas as instruções
-        for (String instrucao : instrucoes) {
-            instrucao = instrucao.trim();
-            if (instrucao.isEmpty())
-                continue;
-
-            mapa.put(endereco, instrucao);
-            endereco += 4;
-
-            // arrumar a deteccao de conflitos de controle e arrumar o NOPs (add sempre 3)
-            // ARRUMAR OS NOPS
-
-            // Detecta conflito de controle
-            if (instrucao.startsWith("BEQ") || instrucao.startsWith("BNE") || instrucao.startsWith("J")) {
-                conflitosControle++;
-
-                for (int i = 0; i < 3; i++) {
-                    mapa.put(endereco, "NOP");
-                    endereco += 4;
-                    nopsInseridos++;
+            for (int i = 0; i < args.length; i++) {
+                String opcao = args[i];
+                if (!opcao.startsWith("--")) {
+                    opcoes.entradas.addAll(expandir(opcao));
+                    continue;
+                }
+                switch (opcao) {
+                    case "--so-estatisticas":
+                        opcoes.soEstatisticas = true;
+                        continue;
+                    case "--silencioso":
+                        opcoes.silencioso = true;
+                        continue;
+                    case "--registradores":
+                        opcoes.registradores = true;
+                        continue;
+                    case "--paralelo":
+                        opcoes.paralelo = true;
+                        continue;
+                    case "--escalonamento":
+                        escalonamento = true;
+                        continue;
+                    case "--memoria-unificada":
+                        memoriaUnificada = true;
+                        continue;
+                    default:
+                        break;
                 }
 
-                regDestinoAnterior = "";
-                continue;
+                if (i + 1 >= args.length)
+                    throw new IllegalArgumentException("Falta o valor de " + opcao);
+                String valor = args[++i];
+                switch (opcao) {
+                    case "--saida":
+                        opcoes.diretorioSaida = Paths.get(valor);
+                        break;
+                    case "--formato":
+                        opcoes.formato = EscritorListagem.formato(valor);
+                        break;
+                    case "--modos":
+                        opcoes.estatico = contem(valor, "estatico", "estatico", "execucao");
+                        opcoes.execucao = contem(valor, "execucao", "estatico", "execucao");
+                        opcoes.modosInformados = true;
+                        break;
+                    case "--forwarding":
+                        opcoes.semForwarding = contem(valor, "sem", "sem", "com");
+                        opcoes.comForwarding = contem(valor, "com", "sem", "com");
+                        break;
+                    case "--threads":
+                        opcoes.threads = Integer.parseInt(valor);
+                        break;
+                    case "--limite":
+                        opcoes.limitePassos = Long.parseLong(valor);
+                        break;
+                    case "--pipeline":
+                        pipeline = valor;
+                        break;
+                    case "--preditor":
+                        preditor = valor;
+                        break;
+                    case "--cache-i":
+                        cacheInstrucoes = valor;
+                        break;
+                    case "--cache-d":
+                        cacheDados = valor;
+                        break;
+                    case "--portas":
+                        portas = valor;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opção desconhecida: " + opcao);
+                }
             }
 
-            // Detecta conflito de dados
-            String semVirgulas = instrucao.replace(",", "");
-            String[] partes = semVirgulas.split("\\s+");
+            String[] leituraEscrita = portas.split("/");
+            if (leituraEscrita.length != 2)
+                throw new IllegalArgumentException("Portas no formato leitura/escrita (" + portas + ")");
+            opcoes.configuracao = new ConfiguracaoAnalise(pipeline, false, escalonamento, preditor, cacheInstrucoes,
+                    cacheDados, memoriaUnificada, Integer.parseInt(leituraEscrita[0].trim()),
+                    Integer.parseInt(leituraEscrita[1].trim()));
+            return opcoes;
+        }
 
-            if (partes.length >= 3) {
-                String rd = partes[1]; // destino desta instrução
-                String rs = partes[2]; // fonte 1
-                String rt = partes.length >= 4 ? partes[3] : "";
+        // Lista separada por vírgulas com itens de um conjunto conhecido: o item procurado está nela?
+        private static boolean contem(String lista, String item, String... validos) {
+            boolean encontrado = false;
+            for (String valor : lista.split(",")) {
+                valor = valor.trim();
+                if (!List.of(validos).contains(valor))
+                    throw new IllegalArgumentException("Valor desconhecido: " + valor + " (opções: "
+                            + String.join(", ", validos) + ")");
+                encontrado |= valor.equals(item);
+            }
+            return encontrado;
+        }
 
-                if (!regDestinoAnterior.isEmpty() && (rs.equals(regDestinoAnterior) || rt.equals(regDestinoAnterior))) {
-                    conflitosDados++;
+        // Arquivo simples ou glob no último componente, em ordem alfabética
+        private static List<Path> expandir(String padrao) throws IOException {
+            Path caminho = Paths.get(padrao);
+            String nome = caminho.getFileName().toString();
+            if (nome.chars().noneMatch(c -> c == '*' || c == '?' || c == '[' || c == '{'))
+                return List.of(caminho);
 
-                    for (int i = 0; i < 3; i++) {
-                        mapa.put(endereco, "NOP");
-                        endereco += 4;
-                        nopsInseridos++;
-                    }
+            Path diretorio = caminho.getParent() != null ? caminho.getParent() : Paths.get("");
+            List<Path> encontrados = new ArrayList<>();
+            try (DirectoryStream<Path> itens = Files.newDirectoryStream(
+                    diretorio.toString().isEmpty() ? Paths.get(".") : diretorio, nome)) {
+                for (Path item : itens) {
+                    if (Files.isRegularFile(item))
+                        encontrados.add(diretorio.resolve(item.getFileName()));
                 }
+            }
+            if (encontrados.isEmpty())
+                throw new IllegalArgumentException("Nenhum arquivo corresponde a " + padrao);
+            encontrados.sort(null);
+            return encontrados;
+        }
+    }
 
-                regDestinoAnterior = rd;
+    public static void main(String[] args) throws IOException {
+        Opcoes opcoes = Opcoes.ler(args);
+        if (opcoes.entradas.isEmpty())
+            opcoes.entradas.add(Paths.get(ENTRADA_PADRAO));
+        if (!opcoes.soEstatisticas && !opcoes.diretorioSaida.toString().isEmpty())
+            Files.createDirectories(opcoes.diretorioSaida);
+
+        if (!opcoes.silencioso)
+            System.out.println("SIMULADOR DE PIPELINE\n");
+
+        for (Path entrada : opcoes.entradas) {
+            if (!opcoes.silencioso && opcoes.entradas.size() > 1)
+                System.out.println("== " + entrada + "\n");
+            // Com várias entradas, as listagens levam o nome de cada uma
+            String prefixo = opcoes.entradas.size() > 1 ? semExtensao(entrada) + "_" : "";
+
+            // Simula os modos pedidos em uma só passada; o arquivo é lido em
+            // blocos, sem carregar tudo na memória
+            if (opcoes.estatico && opcoes.paralelo)
+                simularParalelo(entrada, opcoes, prefixo);
+            else if (opcoes.estatico)
+                simularArquivo(entrada, opcoes, prefixo);
+
+            // O mesmo programa executado: desvios tomados e chamadas recursivas
+            // entram no fluxo quantas vezes forem executados. Só o código de
+            // máquina é carregado inteiro; o formato sai da primeira linha.
+            if (opcoes.execucao && ehCodigoDeMaquina(entrada))
+                simularExecucao(LeitorTrace.carregar(entrada), opcoes);
+            else if (opcoes.execucao && opcoes.modosInformados)
+                System.err.println("Aviso: " + entrada + " não é código de máquina; o modo execucao foi ignorado");
+        }
+    }
+
+    // A primeira linha não vazia é uma palavra hexadecimal?
+    private static boolean ehCodigoDeMaquina(Path arquivo) throws IOException {
+        try (BufferedReader leitor = Files.newBufferedReader(arquivo)) {
+            for (String linha = leitor.readLine(); linha != null; linha = leitor.readLine()) {
+                linha = linha.trim();
+                if (!linha.isEmpty())
+                    return Decodificador.ehPalavraHex(linha);
             }
+        }
+        return false;
+    }
 
+    private static void simularArquivo(Path arquivo, Opcoes opcoes, String prefixo) throws IOException {
+        // Cada instrução ocupa ao menos 2 bytes no arquivo (caractere + quebra de linha)
+        long instrucoesPrevistas = Files.size(arquivo) / 2;
+        List<AnaliseHazards> analises = new ArrayList<>();
+        try {
+            for (boolean forwarding : forwardings(opcoes)) {
+                Path saida = opcoes.soEstatisticas ? null
+                        : opcoes.diretorioSaida.resolve(prefixo + nomeSaida(forwarding, opcoes.formato));
+                AnaliseHazards analise = opcoes.configuracao.variante(forwarding, opcoes.configuracao.escalonamento())
+                        .criarAnalise(saida, instrucoesPrevistas);
+                analise.definirFormato(opcoes.formato);
+                analises.add(analise);
+            }
+        } catch (IOException | RuntimeException e) {
+            // As listagens já abertas não chegam a ser gravadas
+            for (AnaliseHazards analise : analises)
+                analise.descartarListagem();
+            throw e;
+        }
+
+        try (AnaliseMultipla multipla = new AnaliseMultipla(analises, opcoes.threads)) {
+            // O escalonador precisa conhecer antes os desvios que voltam a blocos já lidos
+            if (opcoes.configuracao.escalonamento()) {
+                LeitorTrace.ler(arquivo, bloco -> {
+                    for (AnaliseHazards analise : analises)
+                        analise.registrarAlvos(bloco);
+                });
+            }
+
+            LeitorTrace.ler(arquivo, multipla);
+            if (opcoes.silencioso)
+                multipla.finalizar();
+            else
+                multipla.concluir();
+        }
+    }
+
+    // Análise estática do programa inteiro na memória, dividido em partes
+    // analisadas em paralelo (AnaliseParalela). Só conta conflitos e insere
+    // NOPs: o motor de ciclos é sequencial e fica com simularArquivo.
+    private static void simularParalelo(Path arquivo, Opcoes opcoes, String prefixo) throws IOException {
+        ConfiguracaoAnalise c = opcoes.configuracao;
+        if (opcoes.formato != EscritorListagem.TEXTO || c.escalonamento()
+                || !c.preditor().equals(ConfiguracaoAnalise.SEM_PREDITOR)
+                || !c.cacheInstrucoes().equals(ConfiguracaoAnalise.SEM_CACHE)
+                || !c.cacheDados().equals(ConfiguracaoAnalise.SEM_CACHE) || c.memoriaUnificada()
+                || c.portasLeitura() != 2 || c.portasEscrita() != 1)
+            throw new IllegalArgumentException("--paralelo só gera listagens em texto, sem escalonamento,"
+                    + " preditor, caches ou conflitos estruturais");
+
+        Programa programa = LeitorTrace.carregar(arquivo);
+        for (boolean forwarding : forwardings(opcoes)) {
+            Path saida = opcoes.soEstatisticas ? null
+                    : opcoes.diretorioSaida.resolve(prefixo + nomeSaida(forwarding, opcoes.formato));
+            AnaliseParalela analise = new AnaliseParalela(c.pipeline(), forwarding, opcoes.threads, 0);
+            // Mesma estimativa de simularArquivo, para os endereços terem a mesma largura
+            analise.analisar(programa, saida, Files.size(arquivo) / 2);
+            if (!opcoes.silencioso)
+                analise.imprimirResumo();
+        }
+    }
+
+    // Executa o programa uma vez e analisa o fluxo dinâmico nos modos pedidos
+    private static void simularExecucao(Programa programa, Opcoes opcoes) throws IOException {
+        // O escalonamento só se aplica ao programa estático
+        List<AnaliseHazards> analises = new ArrayList<>();
+        for (boolean forwarding : forwardings(opcoes))
+            analises.add(opcoes.configuracao.variante(forwarding, false).criarAnalise(null, 0));
+
+        Executor executor = new Executor(programa);
+        executor.executar(opcoes.limitePassos, fluxo -> {
+            for (AnaliseHazards analise : analises)
+                analise.processar(fluxo);
+        });
+
+        if (opcoes.silencioso) {
+            for (AnaliseHazards analise : analises)
+                analise.finalizar();
+            return;
         }
+        System.out.println("EXECUÇÃO\n");
+        System.out.println("Instruções executadas: " + executor.passos() + " (parada: " + executor.motivoParada() + ")");
+        if (opcoes.registradores)
+            imprimirRegistradores(executor);
+        System.out.println();
+        for (AnaliseHazards analise : analises)
+            analise.concluir();
+    }
 
-        // Monta resultado com endereços
-        for (Map.Entry<Integer, String> e : mapa.entrySet()) {
-            String endHex = String.format("0x%04X", e.getKey());
-            saida.add(endHex + "  " + e.getValue());
+    private static void imprimirRegistradores(Executor executor) {
+        StringBuilder linha = new StringBuilder();
+        for (int r = 1; r < 32; r++) {
+            if (executor.registrador(r) != 0)
+                linha.append(linha.length() == 0 ? "" : ", ").append("x").append(r).append(" = ")
+                        .append(executor.registrador(r));
         }
+        System.out.println("Registradores: " + (linha.length() == 0 ? "todos nulos" : linha));
+    }
+
+    static List<Boolean> forwardings(Opcoes opcoes) {
+        List<Boolean> modos = new ArrayList<>();
+        if (opcoes.semForwarding)
+            modos.add(false);
+        if (opcoes.comForwarding)
+            modos.add(true);
+        return modos;
+    }
+
+    private static String semExtensao(Path arquivo) {
+        String nome = arquivo.getFileName().toString();
+        int ponto = nome.lastIndexOf('.');
+        return ponto > 0 ? nome.substring(0, ponto) : nome;
+    }
 
-        System.out.println("Resultado (" + (forwarding ? "Com" : "Sem") + " Forwarding)");
-        System.out.println("Conflitos de Dados: " + conflitosDados);
-        System.out.println("Conflitos de Controle: " + conflitosControle);
-        System.out.println("NOPs Inseridos: " + nopsInseridos);
-        System.out.println("Sobrecusto: +" + nopsInseridos + " instruções");
-        System.out.println("Total final: " + (instrucoes.size() + nopsInseridos));
-        System.out.println("Endereço final: 0x" + String.format("%04X", (mapa.size() * 4) - 4));
-        System.out.println("\n--------------------------------------------\n");
-
-        String nomeSaida = forwarding ? "saida_com_forwarding.txt" : "saida_sem_forwarding.txt";
-        Files.write(Paths.get(nomeSaida), saida);
+    private static Path nomeSaida(boolean forwarding, int formato) {
+        return Paths.get((forwarding ? "saida_com_forwarding" : "saida_sem_forwarding")
+                + EscritorListagem.extensao(formato));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,184 @@
+import java.util.Arrays;
+
+// Preditores de desvio para o MotorCiclos. Cada um guarda seu estado em arrays
+// primitivos indexados pelos bits baixos do endereço (sem objetos por desvio).
+// A previsão é feita na busca e a tabela é atualizada logo em seguida com o
+// resultado real, que o motor já conhece.
+public abstract class PreditorDesvios {
+    public static final String[] NOMES = {"nao-tomado", "btfn", "1bit", "2bits", "gshare", "btb"};
+
+    private static final int ENTRADAS = 4096; // potência de 2
+    private static final int MASCARA = ENTRADAS - 1;
+
+    public static PreditorDesvios criar(String nome) {
+        switch (nome) {
+            case "nao-tomado":
+                return new NaoTomado();
+            case "btfn":
+                return new Btfn();
+            case "1bit":
+                return new UmBit();
+            case "2bits":
+                return new DoisBits();
+            case "gshare":
+                return new Gshare();
+            case "btb":
+                return new Btb();
+            default:
+                throw new IllegalArgumentException("Preditor desconhecido: " + nome
+                        + " (opções: " + String.join(", ", NOMES) + ")");
+        }
+    }
+
+    public abstract String nome();
+
+    // O desvio condicional em pc será tomado? alvo é o destino se tomado
+    public abstract boolean preverTomado(int pc, int alvo);
+
+    public abstract void atualizar(int pc, boolean tomado, int alvo);
+
+    // Destino já disponível na busca (BTB), ou -1: sem ele um desvio/salto
+    // previsto como tomado só redireciona a busca depois do ID
+    public int alvoNaBusca(int pc) {
+        return -1;
+    }
+
+    // Salto incondicional executado (só interessa a quem guarda destinos)
+    public void registrarSalto(int pc, int alvo) {
+    }
+
+    static int indice(int pc) {
+        return (pc >>> 2) & MASCARA;
+    }
+
+    // Estático: nunca tomado
+    static class NaoTomado extends PreditorDesvios {
+        public String nome() {
+            return "nao-tomado";
+        }
+
+        public boolean preverTomado(int pc, int alvo) {
+            return false;
+        }
+
+        public void atualizar(int pc, boolean tomado, int alvo) {
+        }
+    }
+
+    // Estático: tomado para trás (laços), não tomado para frente
+    static class Btfn extends PreditorDesvios {
+        public String nome() {
+            return "btfn";
+        }
+
+        public boolean preverTomado(int pc, int alvo) {
+            return alvo >= 0 && alvo < pc;
+        }
+
+        public void atualizar(int pc, boolean tomado, int alvo) {
+        }
+    }
+
+    // Repete o último resultado de cada desvio
+    static class UmBit extends PreditorDesvios {
+        private final boolean[] ultimo = new boolean[ENTRADAS];
+
+        public String nome() {
+            return "1bit";
+        }
+
+        public boolean preverTomado(int pc, int alvo) {
+            return ultimo[indice(pc)];
+        }
+
+        public void atualizar(int pc, boolean tomado, int alvo) {
+            ultimo[indice(pc)] = tomado;
+        }
+    }
+
+    // Contador saturado de 2 bits (0-1 não tomado, 2-3 tomado), começando fraco não tomado
+    static class DoisBits extends PreditorDesvios {
+        private final byte[] contadores = new byte[ENTRADAS];
+
+        DoisBits() {
+            Arrays.fill(contadores, (byte) 1);
+        }
+
+        public String nome() {
+            return "2bits";
+        }
+
+        public boolean preverTomado(int pc, int alvo) {
+            return contadores[indice(pc)] >= 2;
+        }
+
+        public void atualizar(int pc, boolean tomado, int alvo) {
+            contadores[indice(pc)] = saturar(contadores[indice(pc)], tomado);
+        }
+    }
+
+    // Contadores de 2 bits indexados por pc XOR histórico global
+    static class Gshare extends PreditorDesvios {
+        private final byte[] contadores = new byte[ENTRADAS];
+        private int historico;
+
+        Gshare() {
+            Arrays.fill(contadores, (byte) 1);
+        }
+
+        public String nome() {
+            return "gshare";
+        }
+
+        public boolean preverTomado(int pc, int alvo) {
+            return contadores[(indice(pc) ^ historico) & MASCARA] >= 2;
+        }
+
+        public void atualizar(int pc, boolean tomado, int alvo) {
+            int i = (indice(pc) ^ historico) & MASCARA;
+            contadores[i] = saturar(contadores[i], tomado);
+            historico = ((historico << 1) | (tomado ? 1 : 0)) & MASCARA;
+        }
+    }
+
+    // Buffer de destinos com mapeamento direto: um desvio presente é previsto
+    // tomado e o destino já sai na busca. Entradas entram quando o desvio é
+    // tomado e saem quando deixa de ser.
+    static class Btb extends PreditorDesvios {
+        private final int[] etiquetas = new int[ENTRADAS]; // pc + 1 (0 = vazia)
+        private final int[] alvos = new int[ENTRADAS];
+
+        public String nome() {
+            return "btb";
+        }
+
+        public boolean preverTomado(int pc, int alvo) {
+            return etiquetas[indice(pc)] == pc + 1;
+        }
+
+        public int alvoNaBusca(int pc) {
+            int i = indice(pc);
+            return etiquetas[i] == pc + 1 ? alvos[i] : -1;
+        }
+
+        public void registrarSalto(int pc, int alvo) {
+            atualizar(pc, true, alvo);
+        }
+
+        public void atualizar(int pc, boolean tomado, int alvo) {
+            int i = indice(pc);
+            if (tomado) {
+                etiquetas[i] = pc + 1;
+                alvos[i] = alvo;
+            } else if (etiquetas[i] == pc + 1) {
+                etiquetas[i] = 0;
+            }
+        }
+    }
+
+    static byte saturar(byte contador, boolean tomado) {
+        if (tomado)
+            return contador < 3 ? (byte) (contador + 1) : contador;
+        return contador > 0 ? (byte) (contador - 1) : contador;
+    }
+}
@@ -0,0 +1,298 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+// Processa um corpus inteiro de programas em uma só JVM (o aquecimento do JIT
+// é pago uma vez). Leitura e decodificação rodam em um pool pequeno, de I/O, e
+// as análises em um pool com uma thread por núcleo; um semáforo limita quantos
+// programas lidos podem esperar pela análise, então a memória não depende do
+// tamanho do corpus. Cada arquivo gera linhas no CSV (uma por modo e
+// forwarding) e os totais do corpus saem no fim.
+//
+// Uso: java ProcessamentoLote (--diretorio DIR [--padrao *.txt] | --manifesto lista.txt)
+//          [--csv lote.csv] [--threads-leitura 4] [opções do PipelineSimples]
+// O manifesto tem um caminho por linha (relativo ao manifesto); linhas vazias
+// e iniciadas por # são ignoradas. As listagens não são geradas.
+public class ProcessamentoLote {
+    private static final String CABECALHO = "arquivo,modo,forwarding,instrucoes,conflitos_dados,conflitos_load_uso,"
+            + "conflitos_controle,conflitos_estruturais,nops,ciclos,cpi,erro";
+
+    // Resultado de uma análise de um arquivo
+    private static class Linha {
+        final String modo;
+        final boolean forwarding;
+        final long instrucoes, conflitosDados, conflitosLoadUso, conflitosControle, conflitosEstruturais, nops,
+                ciclos;
+
+        Linha(String modo, boolean forwarding, AnaliseHazards analise) {
+            this.modo = modo;
+            this.forwarding = forwarding;
+            this.instrucoes = analise.instrucoes();
+            this.conflitosDados = analise.conflitosDados();
+            this.conflitosLoadUso = analise.conflitosLoadUso();
+            this.conflitosControle = analise.conflitosControle();
+            this.conflitosEstruturais = analise.conflitosEstruturais();
+            this.nops = analise.nopsInseridos();
+            this.ciclos = analise.motor().ciclos();
+        }
+    }
+
+    // Soma de um modo/forwarding em todo o corpus
+    private static class Total {
+        long arquivos, instrucoes, conflitosDados, conflitosLoadUso, conflitosControle, conflitosEstruturais, nops,
+                ciclos;
+        double menorCpi = Double.MAX_VALUE, maiorCpi;
+
+        void somar(Linha l) {
+            arquivos++;
+            instrucoes += l.instrucoes;
+            conflitosDados += l.conflitosDados;
+            conflitosLoadUso += l.conflitosLoadUso;
+            conflitosControle += l.conflitosControle;
+            conflitosEstruturais += l.conflitosEstruturais;
+            nops += l.nops;
+            ciclos += l.ciclos;
+            if (l.instrucoes > 0) {
+                double cpi = (double) l.ciclos / l.instrucoes;
+                menorCpi = Math.min(menorCpi, cpi);
+                maiorCpi = Math.max(maiorCpi, cpi);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path diretorio = null;
+        Path manifesto = null;
+        String padrao = "*.txt";
+        Path csv = Paths.get("lote.csv");
+        int threadsLeitura = 4;
+        List<String> restantes = new ArrayList<>(); // opções repassadas ao PipelineSimples
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--diretorio":
+                    diretorio = Paths.get(valor(args, ++i));
+                    break;
+                case "--manifesto":
+                    manifesto = Paths.get(valor(args, ++i));
+                    break;
+                case "--padrao":
+                    padrao = valor(args, ++i);
+                    break;
+                case "--csv":
+                    csv = Paths.get(valor(args, ++i));
+                    break;
+                case "--threads-leitura":
+                    threadsLeitura = Integer.parseInt(valor(args, ++i));
+                    break;
+                default:
+                    restantes.add(args[i]);
+            }
+        }
+        PipelineSimples.Opcoes opcoes = PipelineSimples.Opcoes.ler(restantes.toArray(new String[0]));
+        if (opcoes.paralelo)
+            throw new IllegalArgumentException("--paralelo não se aplica ao lote, que já distribui os arquivos"
+                    + " entre as threads");
+
+        List<Path> arquivos = new ArrayList<>(opcoes.entradas);
+        if (diretorio != null)
+            arquivos.addAll(listarDiretorio(diretorio, padrao));
+        if (manifesto != null)
+            arquivos.addAll(lerManifesto(manifesto));
+        if (arquivos.isEmpty())
+            throw new IllegalArgumentException("Informe --diretorio, --manifesto ou arquivos de entrada");
+
+        long inicio = System.nanoTime();
+        Map<String, Total> totais = new LinkedHashMap<>();
+        int falhas = processar(arquivos, opcoes, threadsLeitura, csv, totais);
+        imprimirTotais(arquivos.size(), falhas, totais, (System.nanoTime() - inicio) / 1e9, csv);
+    }
+
+    private static String valor(String[] args, int i) {
+        if (i >= args.length)
+            throw new IllegalArgumentException("Falta o valor de " + args[i - 1]);
+        return args[i];
+    }
+
+    // Todos os arquivos regulares sob o diretório cujo nome casa com o glob, em ordem
+    static List<Path> listarDiretorio(Path diretorio, String padrao) throws IOException {
+        PathMatcher casa = FileSystems.getDefault().getPathMatcher("glob:" + padrao);
+        try (Stream<Path> itens = Files.walk(diretorio)) {
+            List<Path> arquivos = new ArrayList<>();
+            itens.filter(Files::isRegularFile).filter(p -> casa.matches(p.getFileName())).sorted()
+                    .forEach(arquivos::add);
+            return arquivos;
+        }
+    }
+
+    static List<Path> lerManifesto(Path manifesto) throws IOException {
+        Path base = manifesto.toAbsolutePath().getParent();
+        List<Path> arquivos = new ArrayList<>();
+        for (String linha : Files.readAllLines(manifesto)) {
+            linha = linha.trim();
+            if (!linha.isEmpty() && !linha.startsWith("#"))
+                arquivos.add(base.resolve(linha));
+        }
+        return arquivos;
+    }
+
+    // Agenda os arquivos nos dois pools e grava as linhas na ordem da entrada,
+    // à medida que ficam prontas. Retorna quantos arquivos falharam.
+    private static int processar(List<Path> arquivos, PipelineSimples.Opcoes opcoes, int threadsLeitura, Path csv,
+            Map<String, Total> totais) throws IOException {
+        ExecutorService leitura = Executors.newFixedThreadPool(Math.max(1, threadsLeitura));
+        ExecutorService analise = Executors.newFixedThreadPool(Math.max(1, opcoes.threads));
+        Semaphore pendentes = new Semaphore(Math.max(1, opcoes.threads) * 2); // programas lidos e não analisados
+        int falhas = 0;
+
+        try (PrintWriter saida = new PrintWriter(Files.newBufferedWriter(csv))) {
+            saida.println(CABECALHO);
+            List<CompletableFuture<List<Linha>>> futuros = new ArrayList<>();
+            int proximaGravacao = 0;
+            for (Path arquivo : arquivos) {
+                adquirir(pendentes);
+                futuros.add(CompletableFuture.supplyAsync(() -> ler(arquivo), leitura)
+                        .thenApplyAsync(programa -> analisar(programa, opcoes), analise)
+                        .whenComplete((linhas, erro) -> pendentes.release()));
+
+                // Grava o que já terminou no começo da fila
+                while (proximaGravacao < futuros.size() && futuros.get(proximaGravacao).isDone()) {
+                    falhas += gravar(saida, arquivos.get(proximaGravacao), futuros.get(proximaGravacao), totais);
+                    futuros.set(proximaGravacao++, null);
+                }
+            }
+            for (; proximaGravacao < futuros.size(); proximaGravacao++)
+                falhas += gravar(saida, arquivos.get(proximaGravacao), futuros.get(proximaGravacao), totais);
+        } finally {
+            leitura.shutdown();
+            analise.shutdown();
+        }
+        return falhas;
+    }
+
+    private static Programa ler(Path arquivo) {
+        try {
+            return LeitorTrace.carregar(arquivo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Mesmas análises do PipelineSimples, só com os contadores
+    private static List<Linha> analisar(Programa programa, PipelineSimples.Opcoes opcoes) {
+        try {
+            List<Linha> linhas = new ArrayList<>();
+            ConfiguracaoAnalise configuracao = opcoes.configuracao;
+            if (opcoes.estatico) {
+                for (boolean forwarding : PipelineSimples.forwardings(opcoes)) {
+                    AnaliseHazards analise = configuracao.variante(forwarding, configuracao.escalonamento())
+                            .criarAnalise(null, 0);
+                    analise.processar(programa);
+                    analise.finalizar();
+                    linhas.add(new Linha("estatico", forwarding, analise));
+                }
+            }
+            if (opcoes.execucao && programa.tamanho() > 0 && programa.textoOriginal(0) == null) {
+                List<Boolean> forwardings = PipelineSimples.forwardings(opcoes);
+                List<AnaliseHazards> analises = new ArrayList<>();
+                for (boolean forwarding : forwardings)
+                    analises.add(configuracao.variante(forwarding, false).criarAnalise(null, 0));
+                new Executor(programa).executar(opcoes.limitePassos, fluxo -> {
+                    for (AnaliseHazards a : analises)
+                        a.processar(fluxo);
+                });
+                for (int k = 0; k < analises.size(); k++) {
+                    analises.get(k).finalizar();
+                    linhas.add(new Linha("execucao", forwardings.get(k), analises.get(k)));
+                }
+            }
+            return linhas;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Grava as linhas de um arquivo (ou a falha) e soma nos totais; retorna 1 se falhou
+    private static int gravar(PrintWriter saida, Path arquivo, CompletableFuture<List<Linha>> futuro,
+            Map<String, Total> totais) throws IOException {
+        List<Linha> linhas;
+        try {
+            linhas = futuro.join();
+        } catch (CompletionException e) {
+            Throwable causa = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            String mensagem = String.valueOf(causa.getMessage()).replace(',', ';').replace('\n', ' ');
+            saida.println(campo(arquivo) + ",,,,,,,,,,," + causa.getClass().getSimpleName() + ": " + mensagem);
+            return 1;
+        }
+
+        for (Linha l : linhas) {
+            saida.println(String.join(",", campo(arquivo), l.modo, l.forwarding ? "com" : "sem",
+                    Long.toString(l.instrucoes), Long.toString(l.conflitosDados), Long.toString(l.conflitosLoadUso),
+                    Long.toString(l.conflitosControle), Long.toString(l.conflitosEstruturais), Long.toString(l.nops),
+                    Long.toString(l.ciclos),
+                    String.format(Locale.ROOT, "%.4f", l.instrucoes == 0 ? 0.0 : (double) l.ciclos / l.instrucoes),
+                    ""));
+            totais.computeIfAbsent(l.modo + " " + (l.forwarding ? "com" : "sem") + " forwarding", k -> new Total())
+                    .somar(l);
+        }
+        if (saida.checkError())
+            throw new IOException("Falha ao gravar o CSV");
+        return 0;
+    }
+
+    // Caminhos com vírgula ou aspas vão entre aspas
+    private static String campo(Path arquivo) {
+        String texto = arquivo.toString();
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0)
+            return texto;
+        return '"' + texto.replace("\"", "\"\"") + '"';
+    }
+
+    private static void imprimirTotais(int arquivos, int falhas, Map<String, Total> totais, double segundos,
+            Path csv) {
+        System.out.println("LOTE\n");
+        System.out.printf(Locale.ROOT, "Arquivos: %d (falhas: %d) em %.1f s, por arquivo em %s%n%n", arquivos, falhas,
+                segundos, csv);
+        for (Map.Entry<String, Total> entrada : totais.entrySet()) {
+            Total t = entrada.getValue();
+            System.out.println("Corpus (" + entrada.getKey() + ")");
+            System.out.println("Arquivos: " + t.arquivos);
+            System.out.println("Instruções: " + t.instrucoes);
+            System.out.println("Conflitos de Dados: " + t.conflitosDados + " (load-use: " + t.conflitosLoadUso
+                    + ", ALU: " + (t.conflitosDados - t.conflitosLoadUso) + ")");
+            System.out.println("Conflitos de Controle: " + t.conflitosControle);
+            System.out.println("Conflitos Estruturais: " + t.conflitosEstruturais);
+            System.out.println("NOPs Inseridos: " + t.nops);
+            System.out.println("Ciclos totais: " + t.ciclos);
+            System.out.printf(Locale.ROOT, "CPI agregado: %.3f (por arquivo: %.3f a %.3f)%n",
+                    t.instrucoes == 0 ? 0.0 : (double) t.ciclos / t.instrucoes,
+                    t.menorCpi == Double.MAX_VALUE ? 0.0 : t.menorCpi, t.maiorCpi);
+            System.out.println("\n--------------------------------------------\n");
+        }
+    }
+
+    private static void adquirir(Semaphore semaforo) throws IOException {
+        try {
+            semaforo.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Lote interrompido", e);
+        }
+    }
+}
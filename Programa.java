@@ -0,0 +1,201 @@
+import java.util.Arrays;
+import java.util.List;
+
+// Imagem do programa já decodificado, guardada em colunas de tipos primitivos
+// (uma posição por instrução). A leitura do texto acontece uma única vez aqui;
+// as simulações percorrem apenas os arrays.
+public class Programa {
+    private static final int CAPACIDADE_INICIAL = 256;
+    private static final char[] DIGITOS_HEX = "0123456789abcdef".toCharArray();
+
+    private int tamanho;
+    private int[] opcode; // classe (Decodificador.ALU_REG, LOAD, ...)
+    private byte[] rd;
+    private byte[] rs1;
+    private byte[] rs2;
+    private int[] imediato;
+    private int[] palavra; // código de máquina original
+    private String[] texto; // só existe quando o programa veio em mnemônicos
+
+    public Programa() {
+        this(CAPACIDADE_INICIAL);
+    }
+
+    public Programa(int capacidade) {
+        opcode = new int[capacidade];
+        rd = new byte[capacidade];
+        rs1 = new byte[capacidade];
+        rs2 = new byte[capacidade];
+        imediato = new int[capacidade];
+        palavra = new int[capacidade];
+    }
+
+    public static Programa carregar(List<String> linhas) {
+        Programa programa = new Programa();
+        for (String linha : linhas)
+            programa.adicionarLinha(linha);
+        return programa;
+    }
+
+    // Adiciona uma linha do arquivo de entrada; linhas vazias são ignoradas
+    public void adicionarLinha(String linha) {
+        linha = linha.trim();
+        if (linha.isEmpty())
+            return;
+
+        if (Decodificador.ehPalavraHex(linha)) {
+            int p = Decodificador.lerPalavraHex(linha);
+            adicionar(Decodificador.decodificar(p), p, null);
+        } else {
+            adicionar(Decodificador.decodificarTexto(linha), 0, linha);
+        }
+    }
+
+    public void adicionarPalavra(int p) {
+        adicionar(Decodificador.decodificar(p), p, null);
+    }
+
+    // Copia a instrução i de outro programa, coluna a coluna (versões reordenadas
+    // e fluxos de execução)
+    public void adicionarDe(Programa origem, int i) {
+        if (tamanho == opcode.length)
+            crescer();
+
+        opcode[tamanho] = origem.opcode[i];
+        rd[tamanho] = origem.rd[i];
+        rs1[tamanho] = origem.rs1[i];
+        rs2[tamanho] = origem.rs2[i];
+        imediato[tamanho] = origem.imediato[i];
+        palavra[tamanho] = origem.palavra[i];
+
+        String linha = origem.textoOriginal(i);
+        if (linha != null) {
+            if (texto == null)
+                texto = new String[opcode.length];
+            texto[tamanho] = linha;
+        }
+        tamanho++;
+    }
+
+    // Copia um trecho contíguo de outro programa (bloco básico inteiro)
+    public void adicionarDe(Programa origem, int inicio, int quantidade) {
+        while (tamanho + quantidade > opcode.length)
+            crescer();
+
+        System.arraycopy(origem.opcode, inicio, opcode, tamanho, quantidade);
+        System.arraycopy(origem.rd, inicio, rd, tamanho, quantidade);
+        System.arraycopy(origem.rs1, inicio, rs1, tamanho, quantidade);
+        System.arraycopy(origem.rs2, inicio, rs2, tamanho, quantidade);
+        System.arraycopy(origem.imediato, inicio, imediato, tamanho, quantidade);
+        System.arraycopy(origem.palavra, inicio, palavra, tamanho, quantidade);
+        if (origem.texto != null) {
+            if (texto == null)
+                texto = new String[opcode.length];
+            System.arraycopy(origem.texto, inicio, texto, tamanho, quantidade);
+        }
+        tamanho += quantidade;
+    }
+
+    private void adicionar(long d, int p, String linha) {
+        if (tamanho == opcode.length)
+            crescer();
+
+        opcode[tamanho] = Decodificador.classe(d);
+        rd[tamanho] = (byte) Decodificador.rd(d);
+        rs1[tamanho] = (byte) Decodificador.rs1(d);
+        rs2[tamanho] = (byte) Decodificador.rs2(d);
+        imediato[tamanho] = Decodificador.imediato(d);
+        palavra[tamanho] = p;
+
+        if (linha != null) {
+            if (texto == null)
+                texto = new String[opcode.length];
+            texto[tamanho] = linha;
+        }
+        tamanho++;
+    }
+
+    private void crescer() {
+        int novaCapacidade = Math.max(opcode.length * 2, CAPACIDADE_INICIAL);
+        opcode = Arrays.copyOf(opcode, novaCapacidade);
+        rd = Arrays.copyOf(rd, novaCapacidade);
+        rs1 = Arrays.copyOf(rs1, novaCapacidade);
+        rs2 = Arrays.copyOf(rs2, novaCapacidade);
+        imediato = Arrays.copyOf(imediato, novaCapacidade);
+        palavra = Arrays.copyOf(palavra, novaCapacidade);
+        if (texto != null)
+            texto = Arrays.copyOf(texto, novaCapacidade);
+    }
+
+    // Memória aproximada da imagem (arrays alocados e linhas em mnemônicos),
+    // para quem guarda programas em cache
+    public long bytesEstimados() {
+        long bytes = 15L * opcode.length; // opcode, imediato e palavra (int); rd, rs1 e rs2 (byte)
+        if (texto != null) {
+            bytes += 4L * texto.length;
+            for (int i = 0; i < tamanho; i++) {
+                if (texto[i] != null)
+                    bytes += 40 + texto[i].length(); // cabeçalhos da String e do array, 1 byte por caractere
+            }
+        }
+        return bytes;
+    }
+
+    // Esvazia a imagem mantendo os arrays, para reaproveitá-la como bloco de leitura
+    public void limpar() {
+        if (texto != null)
+            Arrays.fill(texto, 0, tamanho, null);
+        tamanho = 0;
+    }
+
+    public int capacidade() {
+        return opcode.length;
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    public int opcode(int i) {
+        return opcode[i];
+    }
+
+    public int rd(int i) {
+        return rd[i];
+    }
+
+    public int rs1(int i) {
+        return rs1[i];
+    }
+
+    public int rs2(int i) {
+        return rs2[i];
+    }
+
+    public int imediato(int i) {
+        return imediato[i];
+    }
+
+    public int palavra(int i) {
+        return palavra[i];
+    }
+
+    // Linha original em mnemônicos, ou null se a instrução veio em código de máquina
+    public String textoOriginal(int i) {
+        return texto != null ? texto[i] : null;
+    }
+
+    // Texto da instrução para a listagem: a linha original ou a palavra em hexadecimal
+    public String texto(int i) {
+        if (texto != null && texto[i] != null)
+            return texto[i];
+
+        char[] c = new char[8];
+        int p = palavra[i];
+        for (int k = 7; k >= 0; k--) {
+            c[k] = DIGITOS_HEX[p & 0xF];
+            p >>>= 4;
+        }
+        return new String(c);
+    }
+}
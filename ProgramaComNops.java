@@ -0,0 +1,48 @@
+import java.util.Arrays;
+
+// Programa com os NOPs inseridos, em um array denso indexado por endereço >> 2
+// (relativo ao endereço base). Cada posição guarda o índice da instrução no
+// Programa de origem, ou NOP.
+public class ProgramaComNops {
+    public static final int NOP = -1;
+
+    private long enderecoBase;
+    private int tamanho;
+    private int[] origem = new int[1024];
+
+    public void adicionar(int indiceOrigem) {
+        if (tamanho == origem.length)
+            origem = Arrays.copyOf(origem, origem.length * 2);
+        origem[tamanho++] = indiceOrigem;
+    }
+
+    public void adicionarNop() {
+        adicionar(NOP);
+    }
+
+    // Recomeça a partir do endereço informado, mantendo o array
+    public void limpar(long novoEnderecoBase) {
+        enderecoBase = novoEnderecoBase;
+        tamanho = 0;
+    }
+
+    public long enderecoBase() {
+        return enderecoBase;
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    public long endereco(int posicao) {
+        return enderecoBase + (posicao << 2);
+    }
+
+    public int origem(int posicao) {
+        return origem[posicao];
+    }
+
+    public boolean ehNop(int posicao) {
+        return origem[posicao] == NOP;
+    }
+}
@@ -0,0 +1,290 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Corrige os imediatos relativos ao PC (BEQ/BNE/... e JAL) depois da inserção
+// de NOPs, para a listagem continuar executável. JALR é indireto (o alvo vem
+// de registrador) e não precisa de correção. Há dois modos:
+//  - programa inteiro (AnaliseParalela): tabela densa endereço antigo ->
+//    endereço novo, indexada por endereço antigo >> 2, e uma passada;
+//  - em fluxo (AnaliseHazards): o programa chega em blocos, os endereços novos
+//    das instruções mais recentes ficam em uma janela circular e a listagem
+//    passa por uma fila de saída, de onde só sai o que já está corrigido.
+// Os endereços são guardados módulo 2^32: só a diferença entre dois deles é
+// usada, e ela cabe em um int mesmo em traces de vários GB.
+public class Relocacao {
+    private static final int MAX_ESTOUROS_LISTADOS = 10;
+
+    // Alcance dos imediatos: B tem 13 bits com sinal, J tem 21
+    private static final int LIMITE_B = 1 << 12;
+    private static final int LIMITE_J = 1 << 20;
+
+    // O JAL alcança 2^18 instruções para trás; a janela cobre isso mais um
+    // bloco inteiro do LeitorTrace
+    private static final int JANELA = 1 << 19;
+
+    private int[] novoEndereco = new int[1024];
+    private int[] palavras = new int[1024];
+
+    // Modo em fluxo: endereço novo da instrução g em janela[g & (JANELA - 1)]
+    private int[] janela;
+    private long dispostas; // instruções com endereço novo já conhecido
+
+    // Fila de saída: slots dispostos e ainda não entregues à listagem. Um
+    // desvio para frente com alvo ainda não disposto segura a fila a partir dele.
+    private int[] filaPalavra = new int[1024];
+    private String[] filaTexto = new String[1024];
+    private boolean[] filaNop = new boolean[1024];
+    private int tamanhoFila;
+    private long primeiroSlotFila; // número do slot em filaPalavra[0], contado desde o início
+    private long enderecoFila; // endereço de filaPalavra[0]
+
+    // Pendências: desvios para frente esperando o alvo ser disposto
+    private long[] pendenteSlot = new long[16];
+    private long[] pendenteAlvo = new long[16];
+    private long[] pendenteIndice = new long[16]; // posição do desvio no programa
+    private int[] pendenteOrigem = new int[16]; // endereço novo do desvio
+    private int pendentes;
+
+    private long corrigidos;
+    private long naoResolvidos; // alvo fora do programa ou desalinhado
+    private long estouros; // novo deslocamento não cabe no formato
+    private final List<Long> primeirosEstouros = new ArrayList<>(); // endereços originais
+
+    // Tabela do programa inteiro a partir dos NOPs de dados de cada instrução.
+    // O endereço novo de cada instrução é o do seu próprio slot (os NOPs de
+    // controle após um salto já esvaziam o pipeline, então o destino não
+    // precisa dos NOPs de dados).
+    public int[] tabela(Programa programa, byte[] nopsAntes, int nopsControle) {
+        int n = programa.tamanho();
+        if (novoEndereco.length < n + 1)
+            novoEndereco = new int[n + 1];
+
+        int slot = 0;
+        for (int i = 0; i < n; i++) {
+            slot += nopsAntes[i];
+            novoEndereco[i] = slot * 4;
+            slot++;
+            if (Decodificador.ehControle(programa.opcode(i)))
+                slot += nopsControle;
+        }
+        novoEndereco[n] = slot * 4;
+        return novoEndereco;
+    }
+
+    // Corrige as palavras do programa inteiro. indiceBase é a posição da primeira
+    // instrução no programa original (endereço original = 4 * posição).
+    public void corrigir(Programa programa, int[] novoEndereco, long indiceBase) {
+        int n = programa.tamanho();
+        if (palavras.length < n)
+            palavras = new int[Math.max(n, palavras.length * 2)];
+
+        for (int i = 0; i < n; i++) {
+            int palavra = programa.palavra(i);
+            palavras[i] = palavra;
+
+            int classe = programa.opcode(i);
+            if ((classe != Decodificador.DESVIO && classe != Decodificador.JAL) || programa.textoOriginal(i) != null)
+                continue;
+
+            int imediato = programa.imediato(i);
+            long alvo = i + (imediato >> 2);
+            if ((imediato & 3) != 0 || alvo < 0 || alvo > n) {
+                naoResolvidos++;
+                continue;
+            }
+            palavras[i] = recodificar(palavra, classe, imediato, novoEndereco[(int) alvo] - novoEndereco[i],
+                    indiceBase + i);
+        }
+    }
+
+    public int palavra(int i) {
+        return palavras[i];
+    }
+
+    // Modo em fluxo: dispõe o próximo bloco (indiceBase = posição da sua primeira
+    // instrução no programa). Registra os endereços novos, corrige os desvios
+    // cujo alvo já é conhecido, guarda os outros como pendências e põe os slots
+    // na fila. Sem relocar (fluxo de execução), os slots só passam pela fila.
+    public void dispor(Programa bloco, ProgramaComNops layout, long indiceBase, boolean relocar) {
+        if (relocar) {
+            if (janela == null)
+                janela = new int[JANELA];
+            for (int k = 0; k < layout.tamanho(); k++) {
+                if (!layout.ehNop(k))
+                    janela[(int) ((indiceBase + layout.origem(k)) & (JANELA - 1))] = (int) layout.endereco(k);
+            }
+            dispostas = indiceBase + bloco.tamanho();
+            resolverPendencias();
+        }
+
+        garantirFila(tamanhoFila + layout.tamanho());
+        for (int k = 0; k < layout.tamanho(); k++, tamanhoFila++) {
+            if (layout.ehNop(k)) {
+                filaNop[tamanhoFila] = true;
+                filaTexto[tamanhoFila] = null;
+                filaPalavra[tamanhoFila] = EscritorListagem.PALAVRA_NOP;
+                continue;
+            }
+            int i = layout.origem(k);
+            filaNop[tamanhoFila] = false;
+            filaTexto[tamanhoFila] = bloco.textoOriginal(i);
+            filaPalavra[tamanhoFila] = bloco.palavra(i);
+
+            int classe = bloco.opcode(i);
+            if (!relocar || (classe != Decodificador.DESVIO && classe != Decodificador.JAL)
+                    || bloco.textoOriginal(i) != null)
+                continue;
+
+            int imediato = bloco.imediato(i);
+            long alvo = indiceBase + i + (imediato >> 2);
+            if ((imediato & 3) != 0 || alvo < 0 || alvo < dispostas - JANELA) {
+                naoResolvidos++;
+            } else if (alvo < dispostas) {
+                filaPalavra[tamanhoFila] = recodificar(bloco.palavra(i), classe, imediato,
+                        janela[(int) (alvo & (JANELA - 1))] - (int) layout.endereco(k), indiceBase + i);
+            } else {
+                pendencia(primeiroSlotFila + tamanhoFila, alvo, indiceBase + i, (int) layout.endereco(k));
+            }
+        }
+    }
+
+    // Fim do programa: um alvo logo após a última instrução vai para o endereço
+    // final; os demais pendentes estão fora do programa. Depois disso a fila
+    // inteira está pronta.
+    public void encerrar(long enderecoFinal) {
+        for (int p = 0; p < pendentes; p++) {
+            int f = (int) (pendenteSlot[p] - primeiroSlotFila);
+            if (pendenteAlvo[p] == dispostas)
+                corrigirNaFila(f, (int) enderecoFinal - pendenteOrigem[p], pendenteIndice[p]);
+            else
+                naoResolvidos++;
+        }
+        pendentes = 0;
+    }
+
+    // Slots no começo da fila que já podem ser gravados (antes da primeira pendência)
+    public int prontos() {
+        long limite = primeiroSlotFila + tamanhoFila;
+        for (int p = 0; p < pendentes; p++)
+            limite = Math.min(limite, pendenteSlot[p]);
+        return (int) (limite - primeiroSlotFila);
+    }
+
+    public long enderecoNaFila(int k) {
+        return enderecoFila + 4L * k;
+    }
+
+    public boolean nopNaFila(int k) {
+        return filaNop[k];
+    }
+
+    public String textoNaFila(int k) {
+        return filaTexto[k];
+    }
+
+    public int palavraNaFila(int k) {
+        return filaPalavra[k];
+    }
+
+    // Remove da fila os slots já gravados
+    public void descartar(int quantidade) {
+        int restantes = tamanhoFila - quantidade;
+        System.arraycopy(filaPalavra, quantidade, filaPalavra, 0, restantes);
+        System.arraycopy(filaTexto, quantidade, filaTexto, 0, restantes);
+        System.arraycopy(filaNop, quantidade, filaNop, 0, restantes);
+        Arrays.fill(filaTexto, restantes, tamanhoFila, null);
+        tamanhoFila = restantes;
+        primeiroSlotFila += quantidade;
+        enderecoFila += 4L * quantidade;
+    }
+
+    private void resolverPendencias() {
+        int restantes = 0;
+        for (int p = 0; p < pendentes; p++) {
+            if (pendenteAlvo[p] >= dispostas) {
+                pendenteSlot[restantes] = pendenteSlot[p];
+                pendenteAlvo[restantes] = pendenteAlvo[p];
+                pendenteIndice[restantes] = pendenteIndice[p];
+                pendenteOrigem[restantes] = pendenteOrigem[p];
+                restantes++;
+                continue;
+            }
+            corrigirNaFila((int) (pendenteSlot[p] - primeiroSlotFila),
+                    janela[(int) (pendenteAlvo[p] & (JANELA - 1))] - pendenteOrigem[p], pendenteIndice[p]);
+        }
+        pendentes = restantes;
+    }
+
+    private void corrigirNaFila(int f, int deslocamento, long indice) {
+        int palavra = filaPalavra[f];
+        long decodificada = Decodificador.decodificar(palavra);
+        filaPalavra[f] = recodificar(palavra, Decodificador.classe(decodificada), Decodificador.imediato(decodificada),
+                deslocamento, indice);
+    }
+
+    private void pendencia(long slot, long alvo, long indice, int origem) {
+        if (pendentes == pendenteSlot.length) {
+            pendenteSlot = Arrays.copyOf(pendenteSlot, pendentes * 2);
+            pendenteAlvo = Arrays.copyOf(pendenteAlvo, pendentes * 2);
+            pendenteIndice = Arrays.copyOf(pendenteIndice, pendentes * 2);
+            pendenteOrigem = Arrays.copyOf(pendenteOrigem, pendentes * 2);
+        }
+        pendenteSlot[pendentes] = slot;
+        pendenteAlvo[pendentes] = alvo;
+        pendenteIndice[pendentes] = indice;
+        pendenteOrigem[pendentes] = origem;
+        pendentes++;
+    }
+
+    private void garantirFila(int tamanho) {
+        if (tamanho <= filaPalavra.length)
+            return;
+        int novo = Math.max(tamanho, filaPalavra.length * 2);
+        filaPalavra = Arrays.copyOf(filaPalavra, novo);
+        filaTexto = Arrays.copyOf(filaTexto, novo);
+        filaNop = Arrays.copyOf(filaNop, novo);
+    }
+
+    // Palavra com o novo deslocamento, ou a original se ele não couber no formato
+    private int recodificar(int palavra, int classe, int imediato, int deslocamento, long indice) {
+        int limite = classe == Decodificador.DESVIO ? LIMITE_B : LIMITE_J;
+        if (deslocamento < -limite || deslocamento >= limite) {
+            estouros++;
+            if (primeirosEstouros.size() < MAX_ESTOUROS_LISTADOS)
+                primeirosEstouros.add(indice * 4);
+            return palavra;
+        }
+        if (deslocamento == imediato)
+            return palavra;
+        corrigidos++;
+        return classe == Decodificador.DESVIO
+                ? Decodificador.codificarB(deslocamento, (palavra >>> 20) & 0x1F, (palavra >>> 15) & 0x1F,
+                        (palavra >>> 12) & 0x7)
+                : Decodificador.codificarJ(deslocamento, (palavra >>> 7) & 0x1F);
+    }
+
+    public long corrigidos() {
+        return corrigidos;
+    }
+
+    public long naoResolvidos() {
+        return naoResolvidos;
+    }
+
+    public long estouros() {
+        return estouros;
+    }
+
+    public void imprimirResumo() {
+        System.out.println("Desvios relocados: " + corrigidos + " (não resolvidos: " + naoResolvidos
+                + ", estouros de alcance: " + estouros + ")");
+        if (!primeirosEstouros.isEmpty()) {
+            StringBuilder enderecos = new StringBuilder();
+            for (long e : primeirosEstouros)
+                enderecos.append(enderecos.length() == 0 ? "" : ", ").append(String.format("0x%X", e));
+            System.out.println("  Estouros em (endereço original): " + enderecos);
+        }
+    }
+
+}
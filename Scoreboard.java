@@ -0,0 +1,130 @@
+// Placar de registradores: cada bit da máscara indica um registrador com
+// escrita em andamento no pipeline, e prontoEm guarda o ciclo (slot) a partir
+// do qual o valor pode ser consumido. Cobre dependências a qualquer distância
+// dentro da profundidade do pipeline, com custo constante por instrução.
+public class Scoreboard {
+    private int pendentes; // bit r = registrador r ainda não disponível
+    private int cargas; // bit r = a escrita pendente de r é de um load
+    private final int[] prontoEm = new int[32];
+
+    // Slots a mais que o dado de um store pode esperar: com forwarding ele só é
+    // consumido no MEM, um estágio depois dos operandos da ALU
+    private final int folgaDadoStore;
+    private boolean esperaPorCarga; // a última espera foi imposta por um load (load-use)
+
+    public Scoreboard() {
+        this(0);
+    }
+
+    public Scoreboard(int folgaDadoStore) {
+        this.folgaDadoStore = folgaDadoStore;
+    }
+
+    // Quantos ciclos a instrução no slot informado precisa esperar pelos fontes
+    public int espera(int rs1, int rs2, int slot) {
+        return esperaComFolga(rs1, rs2, slot, 0);
+    }
+
+    // Mesma espera, com o rs2 de um store (o dado) consumido mais tarde
+    public int espera(int classe, int rs1, int rs2, int slot) {
+        return esperaComFolga(rs1, rs2, slot, classe == Decodificador.STORE ? folgaDadoStore : 0);
+    }
+
+    private int esperaComFolga(int rs1, int rs2, int slot, int folgaRs2) {
+        int usos = ((1 << rs1) | (1 << rs2)) & ~1; // x0 nunca depende de ninguém
+        int candidatos = pendentes & usos;
+        int espera = 0;
+        esperaPorCarga = false;
+
+        while (candidatos != 0) {
+            int r = Integer.numberOfTrailingZeros(candidatos);
+            candidatos &= candidatos - 1;
+
+            if (prontoEm[r] <= slot) {
+                pendentes &= ~(1 << r); // escrita já concluída
+                continue;
+            }
+            int falta = prontoEm[r] - slot - (r == rs1 ? 0 : folgaRs2);
+            boolean carga = (cargas & (1 << r)) != 0;
+            if (falta > espera || (falta == espera && falta > 0 && carga)) {
+                espera = falta;
+                esperaPorCarga = carga;
+            }
+        }
+        return espera;
+    }
+
+    // A última espera calculada foi causada por um load (e não por uma operação da ALU)?
+    public boolean esperaPorCarga() {
+        return esperaPorCarga;
+    }
+
+    // Algum registrador da máscara ainda não está disponível no slot informado?
+    public boolean pendente(int mascara, int slot) {
+        int candidatos = pendentes & mascara;
+        while (candidatos != 0) {
+            int r = Integer.numberOfTrailingZeros(candidatos);
+            candidatos &= candidatos - 1;
+
+            if (prontoEm[r] > slot)
+                return true;
+            pendentes &= ~(1 << r);
+        }
+        return false;
+    }
+
+    // Registra que rd só estará disponível a partir do slot informado
+    public void escrever(int rd, int slotPronto) {
+        escrever(rd, slotPronto, false);
+    }
+
+    public void escrever(int rd, int slotPronto, boolean carga) {
+        if (rd == 0)
+            return;
+        pendentes |= 1 << rd;
+        cargas = carga ? cargas | (1 << rd) : cargas & ~(1 << rd);
+        prontoEm[rd] = slotPronto;
+    }
+
+    public void limpar() {
+        pendentes = 0;
+    }
+
+    // Soma o deslocamento aos slots das escritas pendentes (muda a base de
+    // contagem, para o contador de slots não estourar em fluxos longos)
+    public void deslocar(int deslocamento) {
+        int registradores = pendentes;
+        while (registradores != 0) {
+            int r = Integer.numberOfTrailingZeros(registradores);
+            registradores &= registradores - 1;
+            prontoEm[r] += deslocamento;
+        }
+    }
+
+    // Copia o estado de outro placar, deslocando os slots (para mudar a base de contagem)
+    public void copiarDe(Scoreboard outro, int deslocamento) {
+        pendentes = outro.pendentes;
+        cargas = outro.cargas;
+        for (int r = 0; r < 32; r++)
+            prontoEm[r] = outro.prontoEm[r] + deslocamento;
+    }
+
+    // Os dois placares vão tomar as mesmas decisões daqui em diante? Compara quanto
+    // falta para cada registrador ficar pronto, cada um relativo ao seu slot atual,
+    // e se a escrita pendente é de um load
+    public boolean equivalente(int slot, Scoreboard outro, int slotOutro) {
+        int registradores = pendentes | outro.pendentes;
+        while (registradores != 0) {
+            int r = Integer.numberOfTrailingZeros(registradores);
+            registradores &= registradores - 1;
+
+            int falta = (pendentes & (1 << r)) != 0 ? Math.max(0, prontoEm[r] - slot) : 0;
+            int faltaOutro = (outro.pendentes & (1 << r)) != 0 ? Math.max(0, outro.prontoEm[r] - slotOutro) : 0;
+            if (falta != faltaOutro)
+                return false;
+            if (falta > 0 && ((cargas ^ outro.cargas) & (1 << r)) != 0)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,329 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Servidor local de análise: a JVM fica no ar (com o JIT aquecido) e cada
+// consulta é um POST com o programa no corpo, em mnemônicos ou palavras hex,
+// uma instrução por linha. A resposta é JSON com os contadores de cada análise
+// e a listagem anotada com os NOPs (só no modo estático). Os programas
+// decodificados ficam em um cache LRU indexado pelo SHA-256 do corpo, limitado
+// em programas e na memória estimada das imagens; o hash volta na resposta e
+// pode ser usado depois em ?programa=, sem reenviar o corpo.
+//
+// Uso: java ServidorAnalise [--porta 8080] [--threads N] [--cache 256] [--cache-mb 256]
+//   POST /analisar?forwarding=sem,com&modos=estatico,execucao&listagem=sim
+//        (também pipeline, escalonamento=sim, preditor, cache-i, cache-d,
+//        memoria-unificada=sim, portas e limite, como no PipelineSimples)
+//   GET  /saude
+// Escuta só no endereço local.
+public class ServidorAnalise {
+    private static final int LIMITE_CORPO = 16 << 20; // bytes
+    // Parâmetros repassados ao PipelineSimples.Opcoes; os dois primeiros não têm valor
+    private static final Set<String> SEM_VALOR = Set.of("escalonamento", "memoria-unificada");
+    private static final Set<String> REPASSADOS = Set.of("escalonamento", "memoria-unificada", "modos",
+            "forwarding", "pipeline", "preditor", "cache-i", "cache-d", "portas", "limite");
+
+    private final int capacidadeCache;
+    private final long limiteBytesCache;
+    private final Map<String, Programa> programas = new LinkedHashMap<>(16, 0.75f, true); // ordem de acesso
+    private long bytesEmCache; // soma de bytesEstimados() dos programas no cache
+
+    public ServidorAnalise(int capacidadeCache, long limiteBytesCache) {
+        this.capacidadeCache = capacidadeCache;
+        this.limiteBytesCache = limiteBytesCache;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int porta = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int cache = 256;
+        int cacheMb = 256;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException("Falta o valor de " + args[i]);
+            switch (args[i]) {
+                case "--porta":
+                    porta = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--cache":
+                    cache = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--cache-mb":
+                    cacheMb = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+            }
+        }
+
+        ServidorAnalise servidor = new ServidorAnalise(cache, (long) cacheMb << 20);
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), porta), 0);
+        ExecutorService trabalhadores = Executors.newFixedThreadPool(Math.max(1, threads));
+        http.createContext("/analisar", servidor::analisar);
+        http.createContext("/saude", servidor::saude);
+        http.setExecutor(trabalhadores);
+        http.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            http.stop(1);
+            trabalhadores.shutdown();
+        }));
+        System.out.println("Servidor de análise em http://" + http.getAddress().getHostString() + ":"
+                + http.getAddress().getPort() + " (" + threads + " threads, cache de " + cache + " programas e "
+                + cacheMb + " MB)");
+    }
+
+    private void saude(HttpExchange troca) throws IOException {
+        int emCache;
+        long bytes;
+        synchronized (programas) {
+            emCache = programas.size();
+            bytes = bytesEmCache;
+        }
+        responder(troca, 200, "{\"status\":\"ok\",\"programas_em_cache\":" + emCache
+                + ",\"bytes_em_cache\":" + bytes + "}");
+    }
+
+    private void analisar(HttpExchange troca) throws IOException {
+        try {
+            if (!troca.getRequestMethod().equals("POST")) {
+                responder(troca, 405, erro("Use POST"));
+                return;
+            }
+            Map<String, String> parametros = parametros(troca.getRequestURI().getRawQuery());
+            byte[] corpo = troca.getRequestBody().readNBytes(LIMITE_CORPO + 1);
+            if (corpo.length > LIMITE_CORPO) {
+                responder(troca, 413, erro("Programa maior que " + LIMITE_CORPO + " bytes"));
+                return;
+            }
+
+            String hash;
+            Programa programa;
+            boolean emCache;
+            if (corpo.length == 0) {
+                hash = parametros.get("programa");
+                if (hash == null)
+                    throw new IllegalArgumentException("Envie o programa no corpo ou informe ?programa=");
+                programa = buscar(hash);
+                if (programa == null) {
+                    responder(troca, 404, erro("Programa fora do cache: " + hash));
+                    return;
+                }
+                emCache = true;
+            } else {
+                hash = sha256(corpo);
+                programa = buscar(hash);
+                emCache = programa != null;
+                if (programa == null) {
+                    programa = Programa.carregar(Arrays.asList(
+                            new String(corpo, StandardCharsets.UTF_8).split("\\R")));
+                    guardar(hash, programa);
+                }
+            }
+
+            responder(troca, 200, analisar(programa, hash, emCache, parametros));
+        } catch (IllegalArgumentException e) {
+            responder(troca, 400, erro(e.getMessage()));
+        } catch (IOException | RuntimeException e) {
+            responder(troca, 500, erro(e.getClass().getSimpleName() + ": " + e.getMessage()));
+        } finally {
+            troca.close(); // sem isso, uma falha ao responder deixaria o cliente esperando
+        }
+    }
+
+    // Mesmas análises do PipelineSimples, com a listagem em memória
+    private static String analisar(Programa programa, String hash, boolean emCache, Map<String, String> parametros)
+            throws IOException {
+        PipelineSimples.Opcoes opcoes = PipelineSimples.Opcoes.ler(argumentos(parametros));
+        boolean listagem = !"nao".equals(parametros.get("listagem"));
+        ConfiguracaoAnalise configuracao = opcoes.configuracao;
+        List<Boolean> forwardings = PipelineSimples.forwardings(opcoes);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"programa\":\"").append(hash).append("\",\"em_cache\":").append(emCache)
+                .append(",\"instrucoes\":").append(programa.tamanho())
+                .append(",\"pipeline\":").append(texto(configuracao.pipeline().nomes()))
+                .append(",\"analises\":[");
+        boolean primeira = true;
+
+        if (opcoes.estatico) {
+            for (boolean forwarding : forwardings) {
+                AnaliseHazards analise = configuracao.variante(forwarding, configuracao.escalonamento())
+                        .criarAnalise(null, 0);
+                ByteArrayOutputStream saida = listagem ? new ByteArrayOutputStream() : null;
+                if (listagem)
+                    analise.gravarListagemEm(Channels.newChannel(saida), programa.tamanho());
+                analise.processar(programa);
+                analise.finalizar();
+
+                json.append(primeira ? "" : ",");
+                primeira = false;
+                resumo(json, "estatico", forwarding, analise);
+                if (listagem) {
+                    json.append(",\"listagem\":[");
+                    String[] linhas = saida.toString(StandardCharsets.UTF_8).split("\\R");
+                    for (int k = 0; k < linhas.length; k++)
+                        json.append(k == 0 ? "" : ",").append(texto(linhas[k]));
+                    json.append(']');
+                }
+                json.append('}');
+            }
+        }
+
+        // A execução só vale para código de máquina; o fluxo não tem listagem
+        if (opcoes.execucao && programa.tamanho() > 0 && programa.textoOriginal(0) == null) {
+            List<AnaliseHazards> analises = new ArrayList<>();
+            for (boolean forwarding : forwardings)
+                analises.add(configuracao.variante(forwarding, false).criarAnalise(null, 0));
+            Executor executor = new Executor(programa);
+            executor.executar(opcoes.limitePassos, fluxo -> {
+                for (AnaliseHazards a : analises)
+                    a.processar(fluxo);
+            });
+            for (int k = 0; k < analises.size(); k++) {
+                analises.get(k).finalizar();
+                json.append(primeira ? "" : ",");
+                primeira = false;
+                resumo(json, "execucao", forwardings.get(k), analises.get(k));
+                json.append(",\"parada\":").append(texto(String.valueOf(executor.motivoParada()))).append('}');
+            }
+        }
+        return json.append("]}").toString();
+    }
+
+    // Abre o objeto de uma análise com os contadores (quem chama fecha)
+    private static void resumo(StringBuilder json, String modo, boolean forwarding, AnaliseHazards a) {
+        MotorCiclos motor = a.motor();
+        json.append("{\"modo\":\"").append(modo).append("\",\"forwarding\":").append(forwarding)
+                .append(",\"instrucoes\":").append(a.instrucoes())
+                .append(",\"conflitos_dados\":").append(a.conflitosDados())
+                .append(",\"conflitos_load_uso\":").append(a.conflitosLoadUso())
+                .append(",\"conflitos_controle\":").append(a.conflitosControle())
+                .append(",\"conflitos_estruturais\":").append(a.conflitosEstruturais())
+                .append(",\"nops\":").append(a.nopsInseridos())
+                .append(",\"ciclos\":").append(motor.ciclos())
+                .append(",\"cpi\":").append(String.format(Locale.ROOT, "%.4f", motor.cpi()))
+                .append(",\"ciclos_parada_dados\":").append(motor.ciclosParadaDados())
+                .append(",\"ciclos_parada_load_uso\":").append(motor.ciclosParadaLoadUso())
+                .append(",\"bolhas_controle\":").append(motor.ciclosBolhaControle())
+                .append(",\"previsoes_erradas\":").append(motor.previsoesErradas());
+        if (a.original() != null)
+            json.append(",\"nops_sem_escalonamento\":").append(a.original().nopsInseridos())
+                    .append(",\"ciclos_sem_escalonamento\":").append(a.original().motor().ciclos());
+    }
+
+    // Parâmetros da consulta no formato da linha de comando do PipelineSimples
+    private static String[] argumentos(Map<String, String> parametros) {
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<String, String> p : parametros.entrySet()) {
+            String nome = p.getKey();
+            if (nome.equals("programa") || nome.equals("listagem"))
+                continue;
+            if (!REPASSADOS.contains(nome))
+                throw new IllegalArgumentException("Parâmetro desconhecido: " + nome);
+            if (!SEM_VALOR.contains(nome)) {
+                args.add("--" + nome);
+                args.add(p.getValue());
+            } else if (p.getValue().equals("sim")) {
+                args.add("--" + nome);
+            } else if (!p.getValue().equals("nao")) {
+                throw new IllegalArgumentException("Use sim ou nao em " + nome + " (" + p.getValue() + ")");
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+
+    private static Map<String, String> parametros(String consulta) {
+        Map<String, String> parametros = new LinkedHashMap<>();
+        if (consulta == null || consulta.isEmpty())
+            return parametros;
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            String nome = URLDecoder.decode(igual < 0 ? par : par.substring(0, igual), StandardCharsets.UTF_8);
+            String valor = igual < 0 ? "" : URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8);
+            parametros.put(nome, valor);
+        }
+        return parametros;
+    }
+
+    private Programa buscar(String hash) {
+        synchronized (programas) {
+            return programas.get(hash);
+        }
+    }
+
+    // Programas são só lidos pelas análises, então podem ser compartilhados. Um
+    // programa maior que o limite inteiro é analisado, mas não fica no cache.
+    private void guardar(String hash, Programa programa) {
+        synchronized (programas) {
+            Programa anterior = programas.put(hash, programa);
+            if (anterior != null)
+                bytesEmCache -= anterior.bytesEstimados();
+            bytesEmCache += programa.bytesEstimados();
+
+            Iterator<Programa> maisAntigo = programas.values().iterator();
+            while (maisAntigo.hasNext() && (programas.size() > capacidadeCache || bytesEmCache > limiteBytesCache)) {
+                bytesEmCache -= maisAntigo.next().bytesEstimados();
+                maisAntigo.remove();
+            }
+        }
+    }
+
+    private static String sha256(byte[] dados) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(dados));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String erro(String mensagem) {
+        return "{\"erro\":" + texto(String.valueOf(mensagem)) + "}";
+    }
+
+    // String JSON com aspas e escapes
+    private static String texto(String valor) {
+        StringBuilder s = new StringBuilder(valor.length() + 2).append('"');
+        for (int k = 0; k < valor.length(); k++) {
+            char c = valor.charAt(k);
+            if (c == '"' || c == '\\')
+                s.append('\\').append(c);
+            else if (c < 0x20)
+                s.append(String.format("\\u%04x", (int) c));
+            else
+                s.append(c);
+        }
+        return s.append('"').toString();
+    }
+
+    private static void responder(HttpExchange troca, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        troca.sendResponseHeaders(status, bytes.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Exploração do espaço de projeto: simula o mesmo programa em todas as
+// combinações de uma grade de configurações e grava um CSV com uma linha por
+// ponto. O programa é decodificado uma vez e só lido pelas simulações; cada
+// ponto é uma tarefa independente em um ForkJoinPool (roubo de trabalho, então
+// pontos lentos, como pipelines profundos, não seguram as outras threads).
+//
+// Uso: java VarreduraParametros --entrada programa.txt [--modo estatico|execucao]
+//          [--pipeline 5,7,10] [--forwarding nao,sim] [--escalonamento nao]
+//          [--preditor nenhum,2bits,gshare|todos] [--cache-i nenhuma,16K:4:32:lru:20]
+//          [--cache-d nenhuma] [--memoria-unificada nao] [--portas 2/1,1/0]
+//          [--limite 100000000] [--threads N] [--saida varredura.csv]
+// Cada opção de grade aceita uma lista separada por vírgulas.
+public class VarreduraParametros {
+    private static final String CABECALHO = "pipeline,forwarding,escalonamento,preditor,cache_i,cache_d,"
+            + "memoria_unificada,portas,instrucoes,conflitos_dados,conflitos_load_uso,conflitos_controle,"
+            + "conflitos_estruturais,nops,ciclos,cpi,ciclos_parada_dados,bolhas_controle,previsoes_erradas,"
+            + "faltas_l1i,faltas_l1d,tempo_ms";
+
+    public static void main(String[] args) throws IOException {
+        Path entrada = null;
+        String modo = null; // padrão: execução para código de máquina
+        String[] pipelines = {"5"};
+        String[] forwardings = {"nao", "sim"};
+        String[] escalonamentos = {"nao"};
+        String[] preditores = {ConfiguracaoAnalise.SEM_PREDITOR};
+        String[] cachesInstrucoes = {ConfiguracaoAnalise.SEM_CACHE};
+        String[] cachesDados = {ConfiguracaoAnalise.SEM_CACHE};
+        String[] memorias = {"nao"};
+        String[] portas = {"2/1"};
+        long limitePassos = PipelineSimples.LIMITE_PASSOS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path saida = Paths.get("varredura.csv");
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException("Falta o valor de " + args[i]);
+            String valor = args[i + 1];
+            switch (args[i]) {
+                case "--entrada":
+                    entrada = Paths.get(valor);
+                    break;
+                case "--modo":
+                    modo = valor;
+                    break;
+                case "--pipeline":
+                    pipelines = lista(valor);
+                    break;
+                case "--forwarding":
+                    forwardings = lista(valor);
+                    break;
+                case "--escalonamento":
+                    escalonamentos = lista(valor);
+                    break;
+                case "--preditor":
+                    preditores = valor.equals("todos") ? todosPreditores() : lista(valor);
+                    break;
+                case "--cache-i":
+                    cachesInstrucoes = lista(valor);
+                    break;
+                case "--cache-d":
+                    cachesDados = lista(valor);
+                    break;
+                case "--memoria-unificada":
+                    memorias = lista(valor);
+                    break;
+                case "--portas":
+                    portas = lista(valor);
+                    break;
+                case "--limite":
+                    limitePassos = Long.parseLong(valor);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(valor);
+                    break;
+                case "--saida":
+                    saida = Paths.get(valor);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+            }
+        }
+        if (entrada == null)
+            throw new IllegalArgumentException("Informe o programa com --entrada");
+
+        Programa programa = LeitorTrace.carregar(entrada);
+        boolean codigoMaquina = programa.tamanho() > 0 && programa.textoOriginal(0) == null;
+        boolean execucao = modo == null ? codigoMaquina : modo.equals("execucao");
+        if (modo != null && !modo.equals("execucao") && !modo.equals("estatico"))
+            throw new IllegalArgumentException("Modo deve ser estatico ou execucao (" + modo + ")");
+
+        List<ConfiguracaoAnalise> grade = new ArrayList<>();
+        for (String pipeline : pipelines)
+            for (String forwarding : forwardings)
+                for (String escalonamento : escalonamentos)
+                    for (String preditor : preditores)
+                        for (String cacheInstrucoes : cachesInstrucoes)
+                            for (String cacheDados : cachesDados)
+                                for (String memoria : memorias)
+                                    for (String porta : portas)
+                                        grade.add(configuracao(pipeline, forwarding, escalonamento, preditor,
+                                                cacheInstrucoes, cacheDados, memoria, porta));
+        if (execucao) {
+            for (ConfiguracaoAnalise configuracao : grade) {
+                if (configuracao.escalonamento())
+                    throw new IllegalArgumentException("O escalonamento só se aplica ao modo estatico");
+            }
+        }
+
+        long inicio = System.nanoTime();
+        List<String> linhas = new ArrayList<>(grade.size() + 1);
+        linhas.add(CABECALHO);
+        linhas.addAll(varrer(programa, grade, execucao, limitePassos, threads));
+        Files.write(saida, linhas);
+        System.out.printf(Locale.ROOT, "%d pontos (%s, %d instruções no programa) em %.1f s com %d threads: %s%n",
+                grade.size(), execucao ? "execução" : "estático", programa.tamanho(),
+                (System.nanoTime() - inicio) / 1e9, threads, saida);
+    }
+
+    // Simula cada ponto da grade e devolve as linhas do CSV na ordem da grade
+    public static List<String> varrer(Programa programa, List<ConfiguracaoAnalise> grade, boolean execucao,
+            long limitePassos, int threads) throws IOException {
+        List<Callable<String>> tarefas = new ArrayList<>();
+        for (ConfiguracaoAnalise configuracao : grade)
+            tarefas.add(() -> simular(programa, configuracao, execucao, limitePassos));
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            List<String> linhas = new ArrayList<>(grade.size());
+            for (Future<String> futuro : pool.invokeAll(tarefas))
+                linhas.add(aguardar(futuro));
+            return linhas;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String simular(Programa programa, ConfiguracaoAnalise configuracao, boolean execucao,
+            long limitePassos) throws IOException {
+        long inicio = System.nanoTime();
+        AnaliseHazards analise = configuracao.criarAnalise(null, programa.tamanho());
+        if (execucao)
+            new Executor(programa).executar(limitePassos, analise::processar);
+        else
+            analise.processar(programa);
+        analise.finalizar();
+        return linha(configuracao, analise, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private static String linha(ConfiguracaoAnalise c, AnaliseHazards a, long milissegundos) {
+        MotorCiclos motor = a.motor();
+        return String.join(",", c.especificacaoPipeline(), simNao(c.forwarding()), simNao(c.escalonamento()),
+                c.preditor(), c.cacheInstrucoes(), c.cacheDados(), simNao(c.memoriaUnificada()),
+                c.portasLeitura() + "/" + c.portasEscrita(), Long.toString(a.instrucoes()),
+                Long.toString(a.conflitosDados()), Long.toString(a.conflitosLoadUso()),
+                Long.toString(a.conflitosControle()), Long.toString(a.conflitosEstruturais()),
+                Long.toString(a.nopsInseridos()), Long.toString(motor.ciclos()),
+                String.format(Locale.ROOT, "%.4f", motor.cpi()), Long.toString(motor.ciclosParadaDados()),
+                Long.toString(motor.ciclosBolhaControle()), Long.toString(motor.previsoesErradas()),
+                Long.toString(motor.cacheInstrucoes() == null ? 0 : motor.cacheInstrucoes().faltas()),
+                Long.toString(motor.cacheDados() == null ? 0 : motor.cacheDados().faltas()),
+                Long.toString(milissegundos));
+    }
+
+    private static ConfiguracaoAnalise configuracao(String pipeline, String forwarding, String escalonamento,
+            String preditor, String cacheInstrucoes, String cacheDados, String memoria, String portas) {
+        String[] leituraEscrita = portas.split("/");
+        if (leituraEscrita.length != 2)
+            throw new IllegalArgumentException("Portas no formato leitura/escrita (" + portas + ")");
+        return new ConfiguracaoAnalise(pipeline, simNao(forwarding), simNao(escalonamento), preditor,
+                cacheInstrucoes, cacheDados, simNao(memoria), Integer.parseInt(leituraEscrita[0].trim()),
+                Integer.parseInt(leituraEscrita[1].trim()));
+    }
+
+    private static String[] lista(String valor) {
+        String[] itens = valor.split(",");
+        for (int k = 0; k < itens.length; k++)
+            itens[k] = itens[k].trim();
+        return itens;
+    }
+
+    private static String[] todosPreditores() {
+        String[] todos = new String[PreditorDesvios.NOMES.length + 1];
+        todos[0] = ConfiguracaoAnalise.SEM_PREDITOR;
+        System.arraycopy(PreditorDesvios.NOMES, 0, todos, 1, PreditorDesvios.NOMES.length);
+        return todos;
+    }
+
+    private static boolean simNao(String valor) {
+        switch (valor) {
+            case "sim":
+                return true;
+            case "nao":
+                return false;
+            default:
+                throw new IllegalArgumentException("Use sim ou nao (" + valor + ")");
+        }
+    }
+
+    private static String simNao(boolean valor) {
+        return valor ? "sim" : "nao";
+    }
+
+    private static <T> T aguardar(Future<T> futuro) throws IOException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Varredura interrompida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,290 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Verificações de ponta a ponta dos caminhos que não aparecem nos resumos:
+// a listagem relocada (com e sem escalonamento) executa como o programa de
+// entrada, a análise fork-join
+// dá os mesmos contadores e a mesma listagem que a sequencial, e o atalho dos
+// blocos traduzidos no fluxo de execução dá os mesmos contadores que a análise
+// instrução a instrução. Além do programa informado, usa dois gerados com
+// desvios entre blocos do LeitorTrace.
+// Termina com código 1 se alguma verificação falhar.
+//
+// Uso: java VerificacaoSimulador [programa em código de máquina]
+//          (padrão: fib_rec_hexadecimal.txt)
+public class VerificacaoSimulador {
+    private static final long LIMITE_PASSOS = 10_000_000;
+    private static final String[] PIPELINES = {"5", "7", "10"};
+    // Sem forwarding, até 127 NOPs de dados antes de uma instrução (o máximo da análise fork-join)
+    private static final String PIPELINE_LIMITE_PARALELA = "129:1:2:2:3:3:2";
+    private static final int[] TAMANHOS_PARTE = {1, 3, 4096};
+    private static final int BLOCO = LeitorTrace.INSTRUCOES_POR_BLOCO;
+    private static final int ADDI = 0x13;
+
+    private static int verificacoes;
+    private static int falhas;
+
+    public static void main(String[] args) throws IOException {
+        Path entrada = Paths.get(args.length > 0 ? args[0] : "fib_rec_hexadecimal.txt");
+        Path diretorio = Files.createTempDirectory("verificacao");
+        try {
+            Path entreBlocos = gravar(programaEntreBlocos(), diretorio.resolve("entre_blocos.txt"));
+            Path escalonavel = gravar(programaEscalonavel(), diretorio.resolve("escalonavel.txt"));
+
+            // a0 e a2 são os resultados do fib; os demais não guardam endereços
+            verificarListagem(entrada, new int[]{10, 12}, false, diretorio);
+            verificarListagem(entreBlocos, new int[]{10, 13, 14, 15}, false, diretorio);
+            verificarListagem(entrada, new int[]{10, 12}, true, diretorio);
+            verificarListagem(escalonavel, new int[]{10, 13, 14, 15, 16, 17}, true, diretorio);
+            verificarSlotsEscalonador();
+
+            verificarParalela(entrada, PIPELINES, diretorio);
+            verificarParalela(entreBlocos, new String[]{"5"}, diretorio);
+            verificarParalela(entrada, new String[]{PIPELINE_LIMITE_PARALELA}, diretorio);
+            verificarPipelineProfundoParalela();
+
+            verificarBlocosTraduzidos(entrada, diretorio);
+        } finally {
+            try (Stream<Path> arquivos = Files.list(diretorio)) {
+                for (Path arquivo : (Iterable<Path>) arquivos::iterator)
+                    Files.delete(arquivo);
+            }
+            Files.delete(diretorio);
+        }
+
+        System.out.println();
+        System.out.println(falhas == 0 ? "Todas as " + verificacoes + " verificações passaram"
+                : falhas + " de " + verificacoes + " verificações falharam");
+        if (falhas > 0)
+            System.exit(1);
+    }
+
+    // A listagem em hex, lida de volta, executa até os mesmos valores nos
+    // registradores indicados (os endereços mudam com os NOPs, então registradores
+    // com endereços de retorno ficam de fora)
+    private static void verificarListagem(Path arquivo, int[] registradores, boolean escalonamento, Path diretorio)
+            throws IOException {
+        Executor esperado = executar(carregar(arquivo));
+        for (boolean forwarding : new boolean[]{false, true}) {
+            Path listagem = diretorio.resolve("listagem.hex");
+            AnaliseHazards analise = new AnaliseHazards(forwarding, listagem, Files.size(arquivo) / 2);
+            analise.definirFormato(EscritorListagem.HEX);
+            if (escalonamento) {
+                analise.ativarEscalonamento();
+                LeitorTrace.ler(arquivo, analise::registrarAlvos);
+            }
+            LeitorTrace.ler(arquivo, analise::processar);
+            analise.finalizar();
+
+            Executor obtido = executar(carregar(listagem));
+            boolean iguais = true;
+            StringBuilder valores = new StringBuilder();
+            for (int r : registradores) {
+                iguais &= esperado.registrador(r) == obtido.registrador(r);
+                valores.append(" x").append(r).append('=').append(obtido.registrador(r));
+            }
+            verificar((escalonamento ? "escalonamento " : "relocação ") + arquivo.getFileName() + " "
+                    + (forwarding ? "com" : "sem") + " forwarding:" + valores, iguais);
+        }
+    }
+
+    // O escalonador recomeça a contagem de slots a cada bloco do LeitorTrace:
+    // começando a poucos slots do limite do int (em pontos diferentes, para o
+    // estouro cair entre um produtor e seu consumidor), a ordem escolhida nos
+    // dois blocos é a mesma que começando do zero
+    private static void verificarSlotsEscalonador() {
+        // Produtor, consumidor e uma instrução independente que pode passar à frente
+        int[] padrao = {Decodificador.codificarI(1, 0, 0, 5, ADDI), Decodificador.codificarR(0, 5, 5, 0, 6, 0x33),
+                Decodificador.codificarI(1, 0, 0, 7, ADDI)};
+        Programa programa = new Programa(2 * BLOCO);
+        for (int i = 0; i < 2 * BLOCO; i++)
+            programa.adicionarPalavra(padrao[i % padrao.length]);
+        for (boolean forwarding : new boolean[]{false, true}) {
+            boolean iguais = true;
+            for (int folga = 0; folga < 16; folga++) {
+                Escalonador referencia = new Escalonador(forwarding);
+                Escalonador perto = new Escalonador(forwarding);
+                perto.iniciarSlot(Integer.MAX_VALUE - folga);
+
+                Programa bloco = new Programa(BLOCO);
+                Programa esperado = new Programa(BLOCO);
+                Programa obtido = new Programa(BLOCO);
+                for (int inicio = 0; inicio < programa.tamanho(); inicio += BLOCO) {
+                    bloco.limpar();
+                    bloco.adicionarDe(programa, inicio, BLOCO);
+                    referencia.escalonar(bloco, esperado);
+                    perto.escalonar(bloco, obtido);
+                    for (int i = 0; i < BLOCO; i++)
+                        iguais &= esperado.palavra(i) == obtido.palavra(i);
+                }
+            }
+            verificar("escalonamento com slots perto de 2^31 " + (forwarding ? "com" : "sem") + " forwarding: "
+                    + programa.tamanho() + " instruções", iguais);
+        }
+    }
+
+    // Mesmos contadores e listagem byte a byte, para vários tamanhos de parte
+    private static void verificarParalela(Path arquivo, String[] pipelines, Path diretorio) throws IOException {
+        Programa programa = carregar(arquivo);
+        Path sequencial = diretorio.resolve("sequencial.txt");
+        Path paralela = diretorio.resolve("paralela.txt");
+        for (String especificacao : pipelines) {
+            DescritorPipeline pipeline = DescritorPipeline.criar(especificacao);
+            for (boolean forwarding : new boolean[]{false, true}) {
+                AnaliseHazards esperada = new AnaliseHazards(pipeline, forwarding, sequencial, programa.tamanho());
+                esperada.processar(programa);
+                esperada.finalizar();
+                byte[] listagemEsperada = Files.readAllBytes(sequencial);
+
+                for (int tamanhoParte : TAMANHOS_PARTE) {
+                    AnaliseParalela obtida = new AnaliseParalela(pipeline, forwarding, 4, tamanhoParte);
+                    obtida.analisar(programa, paralela);
+                    boolean iguais = obtida.instrucoes() == esperada.instrucoes()
+                            && obtida.nopsInseridos() == esperada.nopsInseridos()
+                            && obtida.conflitosDados() == esperada.conflitosDados()
+                            && obtida.conflitosLoadUso() == esperada.conflitosLoadUso()
+                            && obtida.conflitosControle() == esperada.conflitosControle()
+                            && Arrays.equals(listagemEsperada, Files.readAllBytes(paralela));
+                    // Pipelines montados pela especificação têm estágios demais para listar
+                    String nome = especificacao.contains(":") ? especificacao : pipeline.nomes();
+                    verificar("fork-join " + arquivo.getFileName() + " " + nome + " "
+                            + (forwarding ? "com" : "sem") + " forwarding, partes de " + tamanhoParte + ": "
+                            + obtida.nopsInseridos() + " NOPs", iguais);
+                }
+            }
+        }
+    }
+
+    // Um NOP a mais que o limite do byte de nopsAntes: a análise fork-join recusa
+    // o pipeline na construção em vez de truncar a contagem
+    private static void verificarPipelineProfundoParalela() {
+        DescritorPipeline profundo = DescritorPipeline.criar("130:1:2:2:3:3:2");
+        boolean recusado;
+        try {
+            new AnaliseParalela(profundo, false, 4, 0);
+            recusado = false;
+        } catch (IllegalArgumentException e) {
+            recusado = true;
+        }
+        verificar("fork-join recusa " + (profundo.latencia(false, true) - 1) + " NOPs por instrução", recusado);
+    }
+
+    // Sem listagem, a análise do fluxo reaproveita o resumo de cada bloco
+    // traduzido; com listagem, percorre instrução a instrução
+    private static void verificarBlocosTraduzidos(Path arquivo, Path diretorio) throws IOException {
+        Programa programa = carregar(arquivo);
+        for (String especificacao : PIPELINES) {
+            DescritorPipeline pipeline = DescritorPipeline.criar(especificacao);
+            for (boolean forwarding : new boolean[]{false, true}) {
+                AnaliseHazards rapida = new AnaliseHazards(pipeline, forwarding, null, 0);
+                AnaliseHazards completa = new AnaliseHazards(pipeline, forwarding, diretorio.resolve("fluxo.txt"), 0);
+                new Executor(programa).executar(LIMITE_PASSOS, fluxo -> {
+                    rapida.processar(fluxo);
+                    completa.processar(fluxo);
+                });
+                rapida.finalizar();
+                completa.finalizar();
+
+                boolean iguais = rapida.instrucoes() == completa.instrucoes()
+                        && rapida.nopsInseridos() == completa.nopsInseridos()
+                        && rapida.conflitosDados() == completa.conflitosDados()
+                        && rapida.conflitosLoadUso() == completa.conflitosLoadUso()
+                        && rapida.conflitosControle() == completa.conflitosControle()
+                        && rapida.motor().ciclos() == completa.motor().ciclos();
+                verificar("blocos traduzidos " + arquivo.getFileName() + " " + pipeline.nomes() + " "
+                        + (forwarding ? "com" : "sem") + " forwarding: " + rapida.nopsInseridos() + " NOPs, "
+                        + rapida.motor().ciclos() + " ciclos", iguais);
+            }
+        }
+    }
+
+    // Laço que começa no fim do primeiro bloco e fecha com um BNE do segundo,
+    // JAL para frente dentro do segundo e JAL para logo após a última instrução
+    private static Programa programaEntreBlocos() {
+        int n = BLOCO + 4464;
+        int[] palavras = preencher(n);
+        int laco = BLOCO - 6;
+        palavras[0] = Decodificador.codificarI(5, 0, 0, 10, ADDI); // a0 = 5
+        palavras[1] = Decodificador.codificarJ((laco - 1) * 4, 0);
+        palavras[laco] = Decodificador.codificarI(1, 13, 0, 13, ADDI); // a3++
+        palavras[laco + 1] = Decodificador.codificarR(0, 13, 14, 0, 14, 0x33); // a4 += a3
+        for (int i = laco + 2; i <= laco + 10; i++)
+            palavras[i] = Decodificador.codificarI(1, 14, 0, 14, ADDI);
+        palavras[laco + 11] = Decodificador.codificarI(-1, 10, 0, 10, ADDI); // a0--
+        palavras[laco + 12] = Decodificador.codificarB(-12 * 4, 0, 10, 1); // bne a0, zero, laco
+        int soma = n - 10;
+        palavras[laco + 13] = Decodificador.codificarJ((soma - laco - 13) * 4, 0);
+        palavras[soma] = Decodificador.codificarR(0, 14, 13, 0, 15, 0x33); // a5 = a3 + a4
+        palavras[soma + 1] = Decodificador.codificarJ((n - soma - 1) * 4, 0);
+        return programa(palavras);
+    }
+
+    // Alvos de desvio vindos de outro bloco logo após instruções que o
+    // escalonador trocaria de lugar se não soubesse do desvio: um BNE que volta
+    // ao primeiro bloco e um JAL que pula para o terceiro
+    private static Programa programaEscalonavel() {
+        int n = 2 * BLOCO + 6864;
+        int[] palavras = preencher(n);
+        int laco = BLOCO - 7;
+        palavras[0] = Decodificador.codificarI(5, 0, 0, 10, ADDI);
+        palavras[1] = Decodificador.codificarJ((laco - 1) * 4, 0);
+        palavras[laco] = Decodificador.codificarI(1, 13, 0, 13, ADDI); // a3++
+        palavras[laco + 1] = Decodificador.codificarI(0, 13, 0, 15, ADDI); // a5 = a3 (espera por a3)
+        palavras[laco + 2] = Decodificador.codificarI(7, 14, 0, 14, ADDI); // a4 += 7, alvo do BNE
+        palavras[laco + 3] = Decodificador.codificarI(-1, 10, 0, 10, ADDI);
+        for (int i = laco + 4; i < laco + 13; i++)
+            palavras[i] = Decodificador.codificarI(1, 16, 0, 16, ADDI);
+        palavras[laco + 13] = Decodificador.codificarB(-11 * 4, 0, 10, 1); // bne a0, zero, laco + 2
+        int destino = 2 * BLOCO + 3;
+        palavras[laco + 14] = Decodificador.codificarJ((destino - laco - 14) * 4, 0);
+        palavras[destino - 2] = Decodificador.codificarI(1, 13, 0, 13, ADDI);
+        palavras[destino - 1] = Decodificador.codificarI(0, 13, 0, 17, ADDI); // a7 = a3 (espera por a3)
+        palavras[destino] = Decodificador.codificarI(100, 14, 0, 14, ADDI); // alvo do JAL
+        palavras[destino + 1] = Decodificador.codificarJ((n - destino - 1) * 4, 0);
+        return programa(palavras);
+    }
+
+    // addi a2, a2, 1 em todas as posições (nenhuma é executada nos programas acima)
+    private static int[] preencher(int n) {
+        int[] palavras = new int[n];
+        Arrays.fill(palavras, Decodificador.codificarI(1, 12, 0, 12, ADDI));
+        return palavras;
+    }
+
+    private static Programa programa(int[] palavras) {
+        Programa programa = new Programa(palavras.length);
+        for (int p : palavras)
+            programa.adicionarPalavra(p);
+        return programa;
+    }
+
+    private static Path gravar(Programa programa, Path arquivo) throws IOException {
+        List<String> linhas = new ArrayList<>(programa.tamanho());
+        for (int i = 0; i < programa.tamanho(); i++)
+            linhas.add(String.format("%08x", programa.palavra(i)));
+        return Files.write(arquivo, linhas);
+    }
+
+    private static Programa carregar(Path arquivo) throws IOException {
+        return Programa.carregar(Files.readAllLines(arquivo));
+    }
+
+    private static Executor executar(Programa programa) throws IOException {
+        Executor executor = new Executor(programa);
+        executor.executar(LIMITE_PASSOS, fluxo -> { });
+        return executor;
+    }
+
+    private static void verificar(String descricao, boolean ok) {
+        verificacoes++;
+        if (!ok)
+            falhas++;
+        System.out.println((ok ? "ok     " : "FALHOU ") + descricao);
+    }
+}